@@ -21,6 +21,7 @@ import org.openvasp.client.session.impl.SessionState;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -45,8 +46,10 @@ public final class VaspInstance implements
 
     private final WhisperApi whisperApi;
     private final ContractService contractService;
+    private final EnsService ensService;
     private final WhisperService whisperService;
     private final MessageService messageService;
+    private final SignService signService;
     private final ConfirmationService confirmationService;
     private final VaspIdentityService vaspIdentityService;
     private SessionManager sessionManager;
@@ -56,8 +59,10 @@ public final class VaspInstance implements
         this.injector = Guice.createInjector(module);
         this.whisperApi = injector.getInstance(WhisperApi.class);
         this.contractService = injector.getInstance(ContractService.class);
+        this.ensService = injector.getInstance(EnsService.class);
         this.whisperService = injector.getInstance(WhisperService.class);
         this.messageService = injector.getInstance(MessageService.class);
+        this.signService = injector.getInstance(SignService.class);
         this.confirmationService = injector.getInstance(ConfirmationService.class);
         this.vaspIdentityService = injector.getInstance(VaspIdentityService.class);
 
@@ -83,7 +88,12 @@ public final class VaspInstance implements
     @Override
     @SneakyThrows
     public void close() {
+        // The waiting messages are not retransmitted over the closed Whisper service
+        confirmationService.close();
         whisperService.close();
+        contractService.close();
+        ensService.close();
+        signService.close();
         module.close();
     }
 
@@ -135,6 +145,11 @@ public final class VaspInstance implements
         return contractService.getVaspContractInfo(vaspCode);
     }
 
+    @Override
+    public void invalidate(@NonNull final EthAddr vaspSmartContractAddress) {
+        contractService.invalidate(vaspSmartContractAddress);
+    }
+
     @Override
     public void send(
             @NonNull final Topic topic,
@@ -145,6 +160,16 @@ public final class VaspInstance implements
         messageService.send(topic, encType, key, message);
     }
 
+    @Override
+    public CompletableFuture<Void> sendAsync(
+            @NonNull final Topic topic,
+            @NonNull final EncryptionType encType,
+            @NonNull final String key,
+            @NonNull final VaspMessage message) {
+
+        return messageService.sendAsync(topic, encType, key, message);
+    }
+
     @Override
     public long addTopicListener(
             @NonNull final Topic topic,
@@ -168,16 +193,31 @@ public final class VaspInstance implements
         confirmationService.registerForConfirmation(message);
     }
 
+    @Override
+    public void registerForConfirmation(@NonNull final VaspMessage message, final Runnable retransmission) {
+        confirmationService.registerForConfirmation(message, retransmission);
+    }
+
     @Override
     public void setConfirmationHandler(Consumer<VaspMessage> handler) {
         confirmationService.setConfirmationHandler(handler);
     }
 
+    @Override
+    public void setConfirmationTimeoutHandler(Consumer<VaspMessage> handler) {
+        confirmationService.setConfirmationTimeoutHandler(handler);
+    }
+
     @Override
     public void confirmReceipt(@NonNull final VaspMessage message) {
         confirmationService.confirmReceipt(message);
     }
 
+    @Override
+    public ConfirmationMetrics getConfirmationMetrics() {
+        return confirmationService.getConfirmationMetrics();
+    }
+
     @Override
     public void setMessageHandler(final BiConsumer<VaspMessage, Session> handler) {
         sessionManager.setMessageHandler(handler);
@@ -55,6 +55,14 @@ public interface WhisperApi extends WhisperSymKeyApi{
 
     List<ShhMessage> getFilterMessages(String filterId);
 
+    /**
+     * Poll several message filters within a single JSON-RPC 2.0 batch.
+     *
+     * @param filterIds IDs of the filters to poll
+     * @return incoming messages for each filter, in the same order as filterIds
+     */
+    List<List<ShhMessage>> getFilterMessagesBatch(List<String> filterIds);
+
     String post(ShhPostRequest postRequest);
 
 }
@@ -0,0 +1,33 @@
+package org.openvasp.client.api.whisper;
+
+import io.reactivex.Flowable;
+import org.openvasp.client.api.whisper.model.ShhMessage;
+import org.openvasp.client.api.whisper.model.ShhNewMessageFilterRequest;
+
+/**
+ * Push-based delivery of Whisper messages via shh_subscribe/shh_unsubscribe.
+ * Requires a WebSocket connection to the Whisper node.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+public interface WhisperSubscriptionApi {
+
+    /**
+     * Check whether the subscriptions are supported by the current connection.
+     * The implementation may try to (re)connect to the node.
+     *
+     * @return true if {@link #subscribeMessages} can be used, false if the caller
+     * has to fall back to polling of message filters
+     */
+    boolean isSubscriptionAvailable();
+
+    /**
+     * Subscribe to the messages matching the given criteria.
+     * Disposing the subscription sends shh_unsubscribe to the node.
+     *
+     * @param criteria the same criteria as used for shh_newMessageFilter
+     * @return the stream of incoming messages, which fails when the connection is lost
+     */
+    Flowable<ShhMessage> subscribeMessages(ShhNewMessageFilterRequest criteria);
+
+}
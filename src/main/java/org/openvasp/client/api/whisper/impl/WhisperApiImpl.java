@@ -10,16 +10,21 @@ import org.openvasp.client.api.whisper.WhisperIOException;
 import org.openvasp.client.api.whisper.model.ShhMessage;
 import org.openvasp.client.api.whisper.model.ShhNewMessageFilterRequest;
 import org.openvasp.client.api.whisper.model.ShhPostRequest;
+import org.openvasp.client.common.VaspException;
 import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
 import org.web3j.protocol.core.Request;
 import org.web3j.protocol.core.Response;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * @author Olexandr_Bilovol@epam.com
@@ -374,6 +379,19 @@ public final class WhisperApiImpl implements WhisperApi, WhisperAsyncApi {
         return invoke(request);
     }
 
+    @Override
+    public List<List<ShhMessage>> getFilterMessagesBatch(final List<String> filterIds) {
+        val requests = new ArrayList<Request<?, MessageListResponse>>(filterIds.size());
+        for (val filterId : filterIds) {
+            requests.add(new Request<>(
+                    SHH_GET_FILTER_MESSAGES,
+                    Collections.singletonList(filterId),
+                    web3jService,
+                    MessageListResponse.class));
+        }
+        return invokeBatch(requests);
+    }
+
     @Override
     public CompletableFuture<List<ShhMessage>> getFilterMessagesAsync(final String filterId) {
         val request = new Request<>(
@@ -418,17 +436,62 @@ public final class WhisperApiImpl implements WhisperApi, WhisperAsyncApi {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private <T, R extends Response<T>> List<T> invokeBatch(final List<Request<?, R>> requests) {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        val batch = new BatchRequest(web3jService);
+        requests.forEach(batch::add);
+
+        try {
+            // JSON-RPC 2.0 allows the replies of a batch to come in any order,
+            // so they are matched with the requests by id
+            val responses = new HashMap<Long, R>();
+            for (val response : web3jService.sendBatch(batch).getResponses()) {
+                responses.put(response.getId(), (R) response);
+            }
+
+            val result = new ArrayList<T>(requests.size());
+            for (val request : requests) {
+                val response = responses.get(request.getId());
+                if (response == null) {
+                    throw new VaspException(
+                            "No reply to the request %s (id = %d) in the JSON-RPC batch",
+                            request.getMethod(),
+                            request.getId());
+                }
+                if (response.hasError()) {
+                    throw new WhisperApiError(response.getError(), response.getRawResponse());
+                }
+                result.add(response.getResult());
+            }
+            return result;
+        } catch (IOException ex) {
+            throw new WhisperIOException(ex);
+        }
+    }
+
     @SneakyThrows
     private static <T, R extends Response<T>> CompletableFuture<T> invokeAsync(final Request<?, R> request) {
-        return request.sendAsync().thenCompose(response -> {
-            val result = new CompletableFuture<T>();
-            if (response.hasError()) {
-                result.complete(response.getResult());
-            } else {
+        val result = new CompletableFuture<T>();
+        request.sendAsync().whenComplete((response, error) -> {
+            if (error != null) {
+                // The same exceptions as the ones thrown by 'invoke'
+                val cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error;
+                result.completeExceptionally(cause instanceof IOException
+                        ? new WhisperIOException((IOException) cause)
+                        : cause);
+            } else if (response.hasError()) {
                 result.completeExceptionally(new WhisperApiError(response.getError(), response.getRawResponse()));
+            } else {
+                result.complete(response.getResult());
             }
-            return result;
         });
+        return result;
     }
 
     //-------------------------------------------------------------------------
@@ -0,0 +1,91 @@
+package org.openvasp.client.api.whisper.impl;
+
+import io.reactivex.Flowable;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.openvasp.client.api.whisper.WhisperSubscriptionApi;
+import org.openvasp.client.api.whisper.model.ShhMessage;
+import org.openvasp.client.api.whisper.model.ShhNewMessageFilterRequest;
+import org.openvasp.client.common.VaspException;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthSubscribe;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.net.ConnectException;
+import java.util.Arrays;
+
+/**
+ * @author Olexandr_Bilovol@epam.com
+ */
+@Slf4j
+public final class WhisperSubscriptionApiImpl implements WhisperSubscriptionApi {
+
+    private static final String SHH_SUBSCRIBE = "shh_subscribe";
+    private static final String SHH_UNSUBSCRIBE = "shh_unsubscribe";
+    private static final String MESSAGES = "messages";
+
+    private static final int NOT_CONNECTED = 0;
+    private static final int CONNECTED = 1;
+    private static final int UNAVAILABLE = 2;
+
+    private final WebSocketService webSocketService;
+    private int state = NOT_CONNECTED;
+
+    /**
+     * @param webSocketService the WebSocket connection to the Whisper node,
+     *                         or null if subscriptions are not configured
+     */
+    public WhisperSubscriptionApiImpl(final WebSocketService webSocketService) {
+        this.webSocketService = webSocketService;
+    }
+
+    @Override
+    public synchronized boolean isSubscriptionAvailable() {
+        if (state == NOT_CONNECTED) {
+            if (webSocketService == null) {
+                state = UNAVAILABLE;
+            } else {
+                try {
+                    webSocketService.connect();
+                    state = CONNECTED;
+                } catch (ConnectException ex) {
+                    log.warn("WebSocket connection to the Whisper node failed, falling back to polling", ex);
+                    state = UNAVAILABLE;
+                }
+            }
+        }
+        return state == CONNECTED;
+    }
+
+    @Override
+    public Flowable<ShhMessage> subscribeMessages(@NonNull final ShhNewMessageFilterRequest criteria) {
+        if (!isSubscriptionAvailable()) {
+            throw new VaspException("Whisper subscriptions are not available");
+        }
+
+        val request = new Request<>(
+                SHH_SUBSCRIBE,
+                Arrays.asList(MESSAGES, criteria),
+                webSocketService,
+                EthSubscribe.class);
+
+        return webSocketService
+                .subscribe(request, SHH_UNSUBSCRIBE, MessageNotification.class)
+                .map(notification -> notification.getParams().getResult())
+                .doOnError(ex -> markUnavailable());
+    }
+
+    private synchronized void markUnavailable() {
+        // WebSocketService cannot reconnect, so all the following subscribers have to poll
+        state = UNAVAILABLE;
+    }
+
+    //-------------------------------------------------------------------------
+    // Models
+
+    public static class MessageNotification extends Notification<ShhMessage> {
+    }
+
+}
@@ -0,0 +1,211 @@
+package org.openvasp.client.common;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Timer for a large number of the short-lived timeouts, most of which are cancelled before they expire,
+ * e.g. the deadlines of the messages waiting for confirmation.
+ * <p>
+ * The timeouts are hashed by their deadline ticks into the buckets of a wheel, a single worker thread
+ * expires one bucket per tick. So adding and cancelling a timeout is O(1) regardless of the number
+ * of the pending ones, at the cost of the timeouts expiring up to one tick late.
+ * The tasks run in the worker thread, so they have to be short and must not block.
+ * The worker thread is started by the first timeout.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@Slf4j
+public final class HashedWheelTimer implements AutoCloseable {
+
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int SHUTDOWN = 2;
+
+    private final long tickNanos;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final Thread worker;
+    private final AtomicInteger state = new AtomicInteger(INIT);
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+
+    private volatile long startTime;
+
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(
+            @NonNull final String threadName,
+            final long tickDuration,
+            @NonNull final TimeUnit unit,
+            final int ticksPerWheel) {
+
+        checkArgument(tickDuration > 0, "tickDuration must be positive");
+        checkArgument(ticksPerWheel > 0 && Integer.bitCount(ticksPerWheel) == 1, "ticksPerWheel must be a power of 2");
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new List[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = ticksPerWheel - 1;
+        this.worker = new Thread(this::workerLoop, threadName);
+        worker.setDaemon(true);
+    }
+
+    /**
+     * Schedule the one-time task
+     *
+     * @return the timeout, which can be cancelled
+     */
+    public Timeout newTimeout(@NonNull final Runnable task, final long delay, @NonNull final TimeUnit unit) {
+        start();
+
+        val deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        val timeout = new Timeout(task, deadline);
+        pendingTimeouts.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return the number of the timeouts, which are neither expired nor cancelled
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    @Override
+    public void close() {
+        if (state.getAndSet(SHUTDOWN) == STARTED) {
+            worker.interrupt();
+        }
+    }
+
+    private void start() {
+        if (state.get() == INIT && state.compareAndSet(INIT, STARTED)) {
+            startTime = System.nanoTime();
+            worker.start();
+        }
+        checkState(state.get() == STARTED, "The timer is closed");
+    }
+
+    private void workerLoop() {
+        long tick = 0;
+        try {
+            while (state.get() == STARTED) {
+                waitForTick(tick);
+                transferNewTimeouts(tick);
+                expireTimeouts(wheel[(int) (tick & mask)]);
+                tick++;
+            }
+        } catch (InterruptedException ex) {
+            // The timer is closed
+        }
+    }
+
+    private void waitForTick(final long tick) throws InterruptedException {
+        val deadline = tickNanos * (tick + 1);
+        long sleepNanos;
+        while ((sleepNanos = deadline - (System.nanoTime() - startTime)) > 0) {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        }
+    }
+
+    private void transferNewTimeouts(final long tick) {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+
+            val deadlineTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            // The timeouts already overdue expire with the current tick
+            val bucketTick = Math.max(deadlineTick, tick);
+            wheel[(int) (bucketTick & mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(final List<Timeout> bucket) {
+        final Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            val timeout = iterator.next();
+            if (timeout.state.get() != Timeout.PENDING) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                iterator.remove();
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    public final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        // Accessed by the worker thread only
+        private long remainingRounds;
+
+        private Timeout(final Runnable task, final long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return false if the timeout has already expired or been cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+
+            // The worker removes it from the wheel when passing its bucket
+            pendingTimeouts.decrementAndGet();
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+
+            pendingTimeouts.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                log.warn("Error of a timeout task", ex);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,180 @@
+package org.openvasp.client.common;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * Table-driven hex encoding, decoding and validation.
+ * <p>
+ * The methods with an offset/length API work on the caller-supplied arrays and do not allocate,
+ * the "0x" prefix is handled by the offsets instead of the substring copies.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+public final class HexUtils {
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private HexUtils() {
+    }
+
+    /**
+     * @return 2 if the string starts with "0x", 0 otherwise
+     */
+    public static int prefixLength(@NonNull final CharSequence str) {
+        return str.length() >= 2 && str.charAt(0) == '0' && str.charAt(1) == 'x' ? 2 : 0;
+    }
+
+    /**
+     * @return true if the string is a non-empty hex string, optionally prefixed with "0x"
+     */
+    public static boolean isValidHex(@NonNull final CharSequence str) {
+        final int start = prefixLength(str);
+        return str.length() > start && isValidHex(str, start, str.length() - start);
+    }
+
+    /**
+     * @return true if all the chars in the range are hex digits
+     */
+    public static boolean isValidHex(@NonNull final CharSequence str, final int offset, final int length) {
+        checkPositionIndexes(offset, offset + length, str.length());
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (hexValue(str.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static String toHex(@NonNull final byte[] bytes, final boolean prefix) {
+        final int start = prefix ? 2 : 0;
+        final char[] chars = new char[start + 2 * bytes.length];
+        if (prefix) {
+            chars[0] = '0';
+            chars[1] = 'x';
+        }
+        encode(bytes, 0, bytes.length, chars, start);
+        return new String(chars);
+    }
+
+    /**
+     * Decode a hex string, optionally prefixed with "0x"
+     */
+    public static byte[] toBytes(@NonNull final CharSequence hex) {
+        final int start = prefixLength(hex);
+        final byte[] result = new byte[(hex.length() - start) / 2];
+        decode(hex, start, hex.length() - start, result, 0);
+        return result;
+    }
+
+    /**
+     * Encode the bytes as lower case hex chars
+     */
+    public static void encode(
+            @NonNull final byte[] src, final int srcOffset, final int length,
+            @NonNull final char[] dst, final int dstOffset) {
+
+        checkPositionIndexes(srcOffset, srcOffset + length, src.length);
+        checkPositionIndexes(dstOffset, dstOffset + 2 * length, dst.length);
+        for (int i = 0; i < length; i++) {
+            final int b = src[srcOffset + i];
+            dst[dstOffset + 2 * i] = HEX_CHARS[(b >> 4) & 0x0f];
+            dst[dstOffset + 2 * i + 1] = HEX_CHARS[b & 0x0f];
+        }
+    }
+
+    /**
+     * Encode the bytes as lower case hex ASCII bytes.
+     * <p>
+     * The bytes are processed from the end, so the source and destination may be the same array
+     * as long as dstOffset >= srcOffset, e.g. to encode in place.
+     */
+    public static void encode(
+            @NonNull final byte[] src, final int srcOffset, final int length,
+            @NonNull final byte[] dst, final int dstOffset) {
+
+        checkPositionIndexes(srcOffset, srcOffset + length, src.length);
+        checkPositionIndexes(dstOffset, dstOffset + 2 * length, dst.length);
+        checkArgument(src != dst || dstOffset >= srcOffset, "The in-place encoding requires dstOffset >= srcOffset");
+        for (int i = length - 1; i >= 0; i--) {
+            final int b = src[srcOffset + i];
+            dst[dstOffset + 2 * i] = (byte) HEX_CHARS[(b >> 4) & 0x0f];
+            dst[dstOffset + 2 * i + 1] = (byte) HEX_CHARS[b & 0x0f];
+        }
+    }
+
+    /**
+     * Decode the hex chars, without the "0x" prefix, into the array
+     *
+     * @return the number of decoded bytes
+     * @throws IllegalArgumentException if the length is odd or a char is not a hex digit
+     */
+    public static int decode(
+            @NonNull final CharSequence src, final int srcOffset, final int length,
+            @NonNull final byte[] dst, final int dstOffset) {
+
+        checkArgument(length % 2 == 0, "The hex string must have an even length");
+        checkPositionIndexes(srcOffset, srcOffset + length, src.length());
+        final int byteLength = length / 2;
+        checkPositionIndexes(dstOffset, dstOffset + byteLength, dst.length);
+        for (int i = 0, j = srcOffset; i < byteLength; i++, j += 2) {
+            final int hi = hexValue(src.charAt(j));
+            final int lo = hexValue(src.charAt(j + 1));
+            if ((hi | lo) < 0) {
+                throw new IllegalArgumentException("Invalid hex string at " + j);
+            }
+            dst[dstOffset + i] = (byte) (hi << 4 | lo);
+        }
+        return byteLength;
+    }
+
+    /**
+     * Compare the secrets in time which does not depend on the position of the first difference
+     */
+    public static boolean constantTimeEquals(@NonNull final byte[] a, @NonNull final byte[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < a.length; i++) {
+            diff |= a[i] ^ b[i];
+        }
+        return diff == 0;
+    }
+
+    /**
+     * Compare the hex-encoded secrets in time which does not depend on the position
+     * of the first difference, the strings must be of the same case
+     */
+    public static boolean constantTimeEquals(@NonNull final CharSequence a, @NonNull final CharSequence b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < a.length(); i++) {
+            diff |= a.charAt(i) ^ b.charAt(i);
+        }
+        return diff == 0;
+    }
+
+    private static int hexValue(final char c) {
+        return c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.openvasp.client.common;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Codec of the Whisper payloads: JSON encoded as UTF-8 bytes, hex-encoded with the "0x" prefix.
+ * <p>
+ * The wire format is the same as the one of {@code hexStrEncode(Json.toJson(value), true)}, but the JSON
+ * is serialized directly into a per-thread byte buffer, which is then hex-encoded in place. The decoding
+ * goes straight from the hex string into the buffer, so the JSON is parsed from the bytes.
+ * <p>
+ * The buffer is reused by the next call on the same thread, so the bytes passed to the callbacks
+ * must not be retained or used outside of the callback.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+public final class PayloadCodec {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    // Bigger buffers are dropped after use, so a rare huge message does not pin the memory of the thread
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(() -> new Buffer(INITIAL_BUFFER_SIZE));
+
+    private PayloadCodec() {
+    }
+
+    /**
+     * Consumer of the hex-encoded payload, which is a valid ASCII string
+     */
+    @FunctionalInterface
+    public interface HexConsumer<R> {
+
+        R accept(byte[] hex, int length);
+
+    }
+
+    /**
+     * Reader of the JSON decoded from a payload
+     */
+    @FunctionalInterface
+    public interface JsonReader<R> {
+
+        R read(byte[] json, int offset, int length) throws IOException;
+
+    }
+
+    public static String encode(@NonNull final Object value) {
+        return encode(value, (hex, length) -> new String(hex, 0, length, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Serialize the value to JSON and hex-encode it with the "0x" prefix
+     *
+     * @param value    the value to serialize
+     * @param consumer gets the buffer containing the hex-encoded payload
+     * @return the result of the consumer
+     */
+    @SneakyThrows
+    public static <R> R encode(@NonNull final Object value, @NonNull final HexConsumer<R> consumer) {
+        val buffer = BUFFERS.get();
+        try {
+            Json.MAPPER.writeValue(buffer, value);
+
+            val jsonLength = buffer.size;
+            val hexLength = 2 + 2 * jsonLength;
+            buffer.ensureCapacity(hexLength);
+
+            // Expand in place, each byte is read before its position is overwritten
+            val bytes = buffer.bytes;
+            HexUtils.encode(bytes, 0, jsonLength, bytes, 2);
+            bytes[0] = '0';
+            bytes[1] = 'x';
+
+            return consumer.accept(bytes, hexLength);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    public static <R> R decode(@NonNull final String payload, @NonNull final JsonReader<R> reader) {
+        return decode(payload, payload.length(), reader);
+    }
+
+    /**
+     * Decode the hex-encoded JSON, optionally prefixed with "0x"
+     *
+     * @param payload the string containing the payload
+     * @param end     the end of the payload in the string, e.g. where the signature starts
+     * @param reader  reads the decoded JSON bytes
+     * @return the result of the reader
+     */
+    @SneakyThrows
+    public static <R> R decode(
+            @NonNull final String payload,
+            final int end,
+            @NonNull final JsonReader<R> reader) {
+
+        checkArgument(end >= 0 && end <= payload.length(), "Invalid payload end: %s", end);
+
+        val start = HexUtils.prefixLength(payload);
+        checkArgument(end >= start, "Invalid payload end: %s", end);
+
+        val buffer = BUFFERS.get();
+        try {
+            val jsonLength = (end - start) / 2;
+            buffer.ensureCapacity(jsonLength);
+
+            val bytes = buffer.bytes;
+            HexUtils.decode(payload, start, end - start, bytes, 0);
+
+            return reader.read(bytes, 0, jsonLength);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private static void release(final Buffer buffer) {
+        if (buffer.bytes.length > MAX_RETAINED_BUFFER_SIZE) {
+            BUFFERS.remove();
+        } else {
+            buffer.size = 0;
+        }
+    }
+
+    private static final class Buffer extends OutputStream {
+
+        private byte[] bytes;
+        private int size;
+
+        private Buffer(final int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        @Override
+        public void write(final int b) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            ensureCapacity(size + len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, 2 * bytes.length));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,250 @@
+package org.openvasp.client.common;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Size and time bounded cache of the values loaded asynchronously, e.g. from the Ethereum node.
+ * <ul>
+ * <li>The least recently used entries are evicted when the max size is exceeded.</li>
+ * <li>An entry expires after the TTL since it was loaded.</li>
+ * <li>An entry older than the refresh interval is still served, while its reload runs in the background.
+ * When the reload fails the entry is kept until the next refresh interval or its expiration.</li>
+ * </ul>
+ * The concurrent loads of the same key are coalesced by {@link SingleFlight}, the failures are not cached.
+ * The optional {@link Listener} follows the cached values, e.g. to persist them.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@Slf4j
+public final class RefreshingCache<K, V> {
+
+    private final Cache<K, Entry<V>> cache;
+    private final SingleFlight<K, V> loads = new SingleFlight<>();
+    private final Function<? super K, ? extends CompletionStage<V>> loader;
+    private final Listener<K, V> listener;
+    private final long refreshNanos;
+    private final Ticker ticker;
+
+    // The in-flight load of each key, an invalidation of the key removes it,
+    // so the load started before does not put its (possibly stale) result
+    private final ConcurrentMap<K, Object> pendingLoads = new ConcurrentHashMap<>();
+
+    public RefreshingCache(
+            final long maxSize,
+            final long msTtl,
+            final long msRefreshInterval,
+            @NonNull final Function<? super K, ? extends CompletionStage<V>> loader) {
+
+        this(maxSize, msTtl, msRefreshInterval, loader, Ticker.systemTicker());
+    }
+
+    public RefreshingCache(
+            final long maxSize,
+            final long msTtl,
+            final long msRefreshInterval,
+            @NonNull final Function<? super K, ? extends CompletionStage<V>> loader,
+            @NonNull final Ticker ticker) {
+
+        this(maxSize, msTtl, msRefreshInterval, loader, new Listener<K, V>() {
+        }, ticker);
+    }
+
+    public RefreshingCache(
+            final long maxSize,
+            final long msTtl,
+            final long msRefreshInterval,
+            @NonNull final Function<? super K, ? extends CompletionStage<V>> loader,
+            @NonNull final Listener<K, V> listener) {
+
+        this(maxSize, msTtl, msRefreshInterval, loader, listener, Ticker.systemTicker());
+    }
+
+    public RefreshingCache(
+            final long maxSize,
+            final long msTtl,
+            final long msRefreshInterval,
+            @NonNull final Function<? super K, ? extends CompletionStage<V>> loader,
+            @NonNull final Listener<K, V> listener,
+            @NonNull final Ticker ticker) {
+
+        checkArgument(maxSize > 0, "maxSize must be positive");
+        checkArgument(msTtl > 0, "msTtl must be positive");
+        checkArgument(msRefreshInterval > 0, "msRefreshInterval must be positive");
+
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(msTtl, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .removalListener(this::onRemoval)
+                .build();
+        this.loader = loader;
+        this.listener = listener;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(msRefreshInterval);
+        this.ticker = ticker;
+    }
+
+    public V get(@NonNull final K key) {
+        return SingleFlight.await(getAsync(key));
+    }
+
+    public CompletableFuture<V> getAsync(@NonNull final K key) {
+        val entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return loads.executeAsync(key, this::loadIfAbsent);
+        }
+
+        val now = ticker.read();
+        if (now >= entry.nextRefresh) {
+            // Until this refresh completes or fails, the entry is not refreshed again
+            entry.nextRefresh = now + refreshNanos;
+            loads.executeAsync(key, this::load).whenComplete((value, error) -> {
+                if (error != null) {
+                    log.warn("Refresh of the cached value for {} failed, the stale value is kept", key, error);
+                }
+            });
+        }
+
+        return CompletableFuture.completedFuture(entry.value);
+    }
+
+    public Optional<V> getIfPresent(@NonNull final K key) {
+        return Optional.ofNullable(cache.getIfPresent(key)).map(entry -> entry.value);
+    }
+
+    public void put(@NonNull final K key, @NonNull final V value) {
+        cache.put(key, new Entry<>(value, ticker.read() + refreshNanos));
+        listener.onCached(key, value);
+    }
+
+    /**
+     * Put the value of unknown freshness, e.g. read from a snapshot, which is served at once
+     * and reloaded in the background at the first access. The listener is not notified.
+     */
+    public void preload(@NonNull final K key, @NonNull final V value) {
+        cache.put(key, new Entry<>(value, ticker.read()));
+    }
+
+    /**
+     * Reload the value in the background, while the cached value, if any, is still served
+     *
+     * @return the reloaded value
+     */
+    public CompletableFuture<V> refresh(@NonNull final K key) {
+        return loads.executeAsync(key, this::load);
+    }
+
+    public void invalidate(@NonNull final K key) {
+        pendingLoads.remove(key);
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        pendingLoads.clear();
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return a copy of the cached entries
+     */
+    public Map<K, V> entries() {
+        val result = new HashMap<K, V>();
+        cache.asMap().forEach((key, entry) -> result.put(key, entry.value));
+        return result;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove the expired entries at once, otherwise they are removed along with the other cache operations
+     */
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    private void onRemoval(final RemovalNotification<K, Entry<V>> notification) {
+        // The notification of an expired or evicted entry may come after the key is cached again
+        val key = notification.getKey();
+        if (notification.getCause() != RemovalCause.REPLACED && key != null && !cache.asMap().containsKey(key)) {
+            listener.onRemoved(key);
+        }
+    }
+
+    private CompletionStage<V> loadIfAbsent(final K key) {
+        // The previous load might have completed after the cache check
+        val entry = cache.getIfPresent(key);
+        return entry != null ? CompletableFuture.completedFuture(entry.value) : load(key);
+    }
+
+    private CompletionStage<V> load(final K key) {
+        // The loads of the same key are coalesced, so there is at most one in flight
+        val token = new Object();
+        pendingLoads.put(key, token);
+
+        final CompletionStage<V> loading;
+        try {
+            loading = loader.apply(key);
+        } catch (RuntimeException ex) {
+            pendingLoads.remove(key, token);
+            throw ex;
+        }
+
+        return loading.whenComplete((value, error) -> {
+            if (pendingLoads.remove(key, token) && error == null) {
+                put(key, value);
+            }
+        });
+    }
+
+    /**
+     * Follows the cached values, called synchronously by the thread modifying the cache
+     */
+    public interface Listener<K, V> {
+
+        /**
+         * The value is loaded or put into the cache
+         */
+        default void onCached(final K key, final V value) {
+        }
+
+        /**
+         * The entry is invalidated, evicted or expired
+         */
+        default void onRemoved(final K key) {
+        }
+
+    }
+
+    private static final class Entry<V> {
+
+        final V value;
+        volatile long nextRefresh;
+
+        Entry(final V value, final long nextRefresh) {
+            this.value = value;
+            this.nextRefresh = nextRefresh;
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.openvasp.client.common;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Coalesces the concurrent calls with the same key: only the first caller runs the loader,
+ * the others wait for its result. The call is forgotten as soon as it is completed,
+ * so the failures are not cached and the next caller makes a new call.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Run the asynchronous loader, unless a call with the same key is in flight
+     *
+     * @return the result of the call, cancelling it does not affect the other callers
+     */
+    public CompletableFuture<V> executeAsync(
+            @NonNull final K key,
+            @NonNull final Function<? super K, ? extends CompletionStage<V>> loader) {
+
+        val call = new CompletableFuture<V>();
+        val existingCall = calls.putIfAbsent(key, call);
+        if (existingCall != null) {
+            return existingCall.copy();
+        }
+
+        try {
+            loader.apply(key).whenComplete((result, error) -> complete(key, call, result, error));
+        } catch (RuntimeException | Error ex) {
+            complete(key, call, null, ex);
+        }
+
+        return call.copy();
+    }
+
+    /**
+     * Run the loader in the calling thread, unless a call with the same key is in flight,
+     * in which case wait for its result
+     */
+    @SneakyThrows
+    public V execute(@NonNull final K key, @NonNull final Function<? super K, ? extends V> loader) {
+        val call = new CompletableFuture<V>();
+        val existingCall = calls.putIfAbsent(key, call);
+        if (existingCall != null) {
+            return await(existingCall);
+        }
+
+        final V result;
+        try {
+            result = loader.apply(key);
+        } catch (Throwable ex) {
+            complete(key, call, null, ex);
+            throw ex;
+        }
+
+        complete(key, call, result, null);
+        return result;
+    }
+
+    /**
+     * @return the number of the calls in flight
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    /**
+     * Wait for the future and rethrow its original exception, if any
+     */
+    @SneakyThrows
+    public static <T> T await(@NonNull final CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private void complete(final K key, final CompletableFuture<V> call, final V result, final Throwable error) {
+        // Forget the call before its completion, so the callers which see the result do not join it anymore
+        calls.remove(key, call);
+        if (error != null) {
+            call.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error);
+        } else {
+            call.complete(result);
+        }
+    }
+
+}
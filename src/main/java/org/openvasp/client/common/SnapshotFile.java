@@ -0,0 +1,183 @@
+package org.openvasp.client.common;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JavaType;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only file of the key-value records, one JSON object per line. A record overrides the previous
+ * records with the same key and a record without value (tombstone) removes the key, so the file is a snapshot
+ * of the latest values, e.g. the VASP contracts loaded from the Ethereum node, which survives restarts.
+ * <p>
+ * The record is appended only when the value is changed, the file is compacted when the overridden
+ * and removed records make the most of it. The snapshot is a best-effort cache: the I/O errors are logged, not thrown,
+ * and a corrupted line, e.g. the last one after a crash, is skipped.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@Slf4j
+public final class SnapshotFile<K, V> {
+
+    private static final int COMPACTION_MIN_LINES = 1000;
+
+    private final Path file;
+    private final JavaType recordType;
+
+    // The latest line of each key, which is not removed
+    private final Map<K, String> lines = new LinkedHashMap<>();
+    private int lineCount;
+
+    public SnapshotFile(
+            @NonNull final Path file,
+            @NonNull final Class<K> keyType,
+            @NonNull final Class<V> valueType) {
+
+        this.file = file;
+        this.recordType = Json.MAPPER.getTypeFactory().constructParametricType(Record.class, keyType, valueType);
+    }
+
+    /**
+     * Read the latest values from the file, if it exists
+     */
+    public synchronized Map<K, V> load() {
+        final Iterable<String> fileLines;
+        try {
+            fileLines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException ex) {
+            return Collections.emptyMap();
+        } catch (IOException ex) {
+            log.warn("Failed to read the snapshot file {}", file, ex);
+            return Collections.emptyMap();
+        }
+
+        val result = new LinkedHashMap<K, V>();
+        lines.clear();
+        lineCount = 0;
+        for (val line : fileLines) {
+            lineCount++;
+            try {
+                final Record<K, V> record = Json.MAPPER.readValue(line, recordType);
+                if (record.value != null) {
+                    result.put(record.key, record.value);
+                    lines.put(record.key, line);
+                } else {
+                    result.remove(record.key);
+                    lines.remove(record.key);
+                }
+            } catch (IOException | IllegalArgumentException ex) {
+                log.warn("Skipped the corrupted line {} of the snapshot file {}", lineCount, file);
+            }
+        }
+
+        compactIfNeeded();
+        return result;
+    }
+
+    /**
+     * Append the record, unless the value of the key is not changed
+     */
+    public synchronized void write(@NonNull final K key, @NonNull final V value) {
+        final String line;
+        try {
+            line = Json.MAPPER.writeValueAsString(new Record<>(key, value));
+        } catch (IOException ex) {
+            log.warn("Failed to serialize the snapshot record for {}", key, ex);
+            return;
+        }
+
+        if (line.equals(lines.get(key))) {
+            return;
+        }
+
+        if (append(line)) {
+            lines.put(key, line);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Append the tombstone of the key, unless the key is absent
+     */
+    public synchronized void remove(@NonNull final K key) {
+        if (!lines.containsKey(key)) {
+            return;
+        }
+
+        final String line;
+        try {
+            line = Json.MAPPER.writeValueAsString(new Record<>(key, null));
+        } catch (IOException ex) {
+            log.warn("Failed to serialize the snapshot tombstone for {}", key, ex);
+            return;
+        }
+
+        if (append(line)) {
+            lines.remove(key);
+            compactIfNeeded();
+        }
+    }
+
+    private boolean append(final String line) {
+        try {
+            val parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(
+                    file,
+                    Collections.singletonList(line),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+            lineCount++;
+            return true;
+        } catch (IOException ex) {
+            log.warn("Failed to write the snapshot file {}", file, ex);
+            return false;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (lineCount < COMPACTION_MIN_LINES || lineCount < 2 * lines.size()) {
+            return;
+        }
+
+        // Rewrite the file with the latest records only, the temporary file replaces it atomically
+        val tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(tmpFile, lines.values(), StandardCharsets.UTF_8);
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lineCount = lines.size();
+        } catch (IOException ex) {
+            log.warn("Failed to compact the snapshot file {}", file, ex);
+        }
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static final class Record<K, V> {
+
+        @JsonProperty
+        K key;
+
+        @JsonProperty
+        V value;
+
+    }
+
+}
@@ -26,6 +26,97 @@ public final class VaspConfig {
     @JsonProperty
     private String contractNodeUrl;
 
+    /**
+     * Optional WebSocket endpoint of the Whisper node (ws://...).
+     * When present, incoming messages are pushed via shh_subscribe,
+     * otherwise the message filters are polled over HTTP.
+     */
+    @JsonProperty
+    private String whisperNodeWsUrl;
+
+    /**
+     * Max number of shh_getFilterMessages calls packed into one JSON-RPC batch
+     * when the message filters are polled. The default value is 100.
+     */
+    @JsonProperty
+    private Integer whisperPollBatchSize;
+
+    /**
+     * Max interval in milliseconds between two polls of an idle message filter.
+     * A filter returning messages is polled every 50 ms, an idle one backs off
+     * exponentially up to this value, so it bounds the delivery delay at an idle topic.
+     * The default value is 1000.
+     */
+    @JsonProperty
+    private Long whisperPollMaxInterval;
+
+    /**
+     * Number of the threads polling the message filters concurrently,
+     * each thread sends its own JSON-RPC batch. The default value is 4.
+     */
+    @JsonProperty
+    private Integer whisperPollThreads;
+
+    /**
+     * Number of the threads running the topic listeners. The messages of the same topic
+     * are dispatched one by one in the order of arrival, the different topics concurrently.
+     * The default value is 4.
+     */
+    @JsonProperty
+    private Integer whisperDispatchThreads;
+
+    /**
+     * Max number of the messages waiting for dispatch at one topic. When the queue is full, the filter
+     * of the topic is not polled and its subscription is paused until the listeners catch up, so the new
+     * messages stay at the Whisper node (subject to their TTL) and a slow listener does not stall the other
+     * topics. The queue may exceed the size by the messages taken from the node at once, e.g. by one poll.
+     * The default value is 1000.
+     */
+    @JsonProperty
+    private Integer whisperDispatchQueueSize;
+
+    /**
+     * Max number of the cached VASP contracts and, separately, of the cached ENS names.
+     * The least recently used entries are evicted first. The default value is 10000.
+     */
+    @JsonProperty
+    private Integer contractCacheMaxSize;
+
+    /**
+     * Time in milliseconds after which a cached VASP contract or ENS name expires
+     * and has to be loaded again. The default value is 86400000 (24 hours).
+     */
+    @JsonProperty
+    private Long contractCacheTtl;
+
+    /**
+     * Age in milliseconds after which a cached VASP contract or ENS name is reloaded in the background,
+     * while the cached value is still served. The default value is 3600000 (1 hour).
+     */
+    @JsonProperty
+    private Long contractCacheRefreshInterval;
+
+    /**
+     * Optional directory where the cached VASP contracts and ENS names are persisted.
+     * When present, the caches are warmed up from there at the start and the cached values
+     * are verified against the Ethereum node at their first use. The invalidated, evicted and expired
+     * entries are removed from there. The directory should not be shared by several VASP instances.
+     */
+    @JsonProperty
+    private String contractCacheDir;
+
+    /**
+     * Optional interval in milliseconds between the checks of the cached VASP contracts against
+     * the Ethereum node. A check costs one eth_blockNumber call while no new block is mined, otherwise
+     * one eth_getBlockByNumber call per new block plus one eth_getLogs call, and only the contracts called
+     * by the new transactions are reloaded. After more than 100 new blocks, all the cached contracts are reloaded
+     * instead. The setters called by another contract are not detected.
+     * With the checks enabled, {@link #contractCacheRefreshInterval} may be as long as {@link #contractCacheTtl}.
+     * When not set, the contracts are not checked.
+     */
+    @JsonProperty
+    private Long contractWatchInterval;
+
     @JsonProperty
     private VaspCode vaspCode;
 
@@ -41,4 +132,27 @@ public final class VaspConfig {
     @JsonProperty
     private Boolean acknowledgmentEnabled;
 
+    /**
+     * Time in milliseconds a sent message waits for its confirmation, when {@link #acknowledgmentEnabled}.
+     * After that the confirmation timeout handler is called and the confirmation topic is released.
+     * The default value is 30000.
+     */
+    @JsonProperty
+    private Long confirmationTimeout;
+
+    /**
+     * Number of times an unconfirmed message is sent again before its {@link #confirmationTimeout} expires.
+     * The retransmissions are spread evenly over the timeout. The default value is 2.
+     */
+    @JsonProperty
+    private Integer confirmationRetransmissions;
+
+    /**
+     * Time in milliseconds the receipt confirmations are collected before being sent, so a confirmation topic
+     * is posted once per batch, e.g. for a message received twice.
+     * The default value is 50.
+     */
+    @JsonProperty
+    private Long confirmationBatchWindow;
+
 }
@@ -6,7 +6,9 @@ import lombok.NonNull;
 import org.apache.commons.lang3.StringUtils;
 import org.openvasp.client.api.whisper.WhisperApi;
 import org.openvasp.client.api.whisper.WhisperAsyncApi;
+import org.openvasp.client.api.whisper.WhisperSubscriptionApi;
 import org.openvasp.client.api.whisper.impl.WhisperApiImpl;
+import org.openvasp.client.api.whisper.impl.WhisperSubscriptionApiImpl;
 import org.openvasp.client.common.ExceptionHandler;
 import org.openvasp.client.common.ExceptionHandlerDelegate;
 import org.openvasp.client.common.annotation.ContractNode;
@@ -19,6 +21,7 @@ import org.openvasp.client.session.impl.SessionManagerImpl;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.http.HttpService;
+import org.web3j.protocol.websocket.WebSocketService;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -33,6 +36,7 @@ public class VaspModule extends AbstractModule implements AutoCloseable {
 
     protected final HttpService whisperHttpService;
     protected final HttpService contractHttpService;
+    protected final WebSocketService whisperWebSocketService;
 
     public VaspModule(@NonNull final VaspConfig vaspConfig) {
         checkNotNull(vaspConfig.getVaspCode());
@@ -55,6 +59,10 @@ public class VaspModule extends AbstractModule implements AutoCloseable {
         whisperHttpService.addHeader("Accept-Encoding", "identity");
 
         this.contractHttpService = new HttpService(vaspConfig.getContractNodeUrl());
+
+        this.whisperWebSocketService = StringUtils.isEmpty(vaspConfig.getWhisperNodeWsUrl())
+                ? null
+                : new WebSocketService(vaspConfig.getWhisperNodeWsUrl(), false);
     }
 
     public VaspCode getVaspCode() {
@@ -65,6 +73,9 @@ public class VaspModule extends AbstractModule implements AutoCloseable {
     public void close() throws Exception {
         whisperHttpService.close();
         contractHttpService.close();
+        if (whisperWebSocketService != null) {
+            whisperWebSocketService.close();
+        }
     }
 
     @Override
@@ -82,6 +93,7 @@ public class VaspModule extends AbstractModule implements AutoCloseable {
 
         bind(WhisperApi.class).to(WhisperApiImpl.class);
         bind(WhisperAsyncApi.class).to(WhisperApiImpl.class);
+        bind(WhisperSubscriptionApi.class).toInstance(new WhisperSubscriptionApiImpl(whisperWebSocketService));
 
         bindEnsService();
         bindContractService();
@@ -0,0 +1,107 @@
+package org.openvasp.client.crypto;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.ECMultiplier;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.web3j.crypto.Sign;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.bouncycastle.util.BigIntegers.asUnsignedByteArray;
+import static org.openvasp.client.common.VaspUtils.toBytes;
+
+/**
+ * ECDSA (secp256k1) signer of the message hashes with the key parsed once.
+ * <p>
+ * The signatures are the same as the ones made by {@link Sign#signMessage(byte[], org.web3j.crypto.ECKeyPair, boolean)}:
+ * deterministic k according to RFC 6979 and the canonical (low) s. But the public key is derived
+ * only once and the recovery id is taken from the R point instead of the recovery of the public key.
+ * The fixed point multiplication by G uses the precomputation tables cached at the curve's G point.
+ * <p>
+ * The instances are immutable and thread-safe.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+public final class PreparedSigner {
+
+    private static final X9ECParameters CURVE_PARAMS = CustomNamedCurves.getByName("secp256k1");
+    private static final ECPoint G = CURVE_PARAMS.getG();
+    private static final BigInteger N = CURVE_PARAMS.getN();
+    private static final BigInteger HALF_N = N.shiftRight(1);
+    private static final ECMultiplier MULTIPLIER = new FixedPointCombMultiplier();
+
+    private final BigInteger privateKey;
+
+    /**
+     * The public key in the same format as {@link org.web3j.crypto.ECKeyPair#getPublicKey()}
+     */
+    @Getter
+    private final BigInteger publicKey;
+
+    private PreparedSigner(final BigInteger privateKey) {
+        checkArgument(privateKey.signum() > 0 && privateKey.compareTo(N) < 0, "Invalid private key");
+
+        this.privateKey = privateKey;
+
+        val encoded = MULTIPLIER.multiply(G, privateKey).getEncoded(false);
+        this.publicKey = new BigInteger(1, Arrays.copyOfRange(encoded, 1, encoded.length));
+    }
+
+    public static PreparedSigner importPrivateKey(@NonNull final String privateKeyHex) {
+        return new PreparedSigner(new BigInteger(1, toBytes(privateKeyHex)));
+    }
+
+    /**
+     * Sign the 32 bytes hash of a message
+     *
+     * @param messageHash the message hash
+     * @return the signature with v = 27 + recovery id
+     */
+    public Sign.SignatureData signHash(@NonNull final byte[] messageHash) {
+        checkArgument(messageHash.length == 32, "The message hash must be 32 bytes long");
+
+        // The calculator keeps a state, so it's created per signature
+        val kCalculator = new HMacDSAKCalculator(new SHA256Digest());
+        kCalculator.init(N, privateKey, messageHash);
+
+        val e = new BigInteger(1, messageHash);
+        while (true) {
+            val k = kCalculator.nextK();
+            val p = MULTIPLIER.multiply(G, k).normalize();
+
+            val x = p.getAffineXCoord().toBigInteger();
+            val r = x.mod(N);
+            if (r.signum() == 0) {
+                continue;
+            }
+
+            BigInteger s = k.modInverse(N).multiply(e.add(privateKey.multiply(r))).mod(N);
+            if (s.signum() == 0) {
+                continue;
+            }
+
+            int recId = (p.getAffineYCoord().testBitZero() ? 1 : 0) | (x.compareTo(N) >= 0 ? 2 : 0);
+
+            // The canonical signature has the low s, the negation of s flips the parity of R
+            if (s.compareTo(HALF_N) > 0) {
+                s = N.subtract(s);
+                recId ^= 1;
+            }
+
+            return new Sign.SignatureData(
+                    (byte) (recId + 27),
+                    asUnsignedByteArray(32, r),
+                    asUnsignedByteArray(32, s));
+        }
+    }
+
+}
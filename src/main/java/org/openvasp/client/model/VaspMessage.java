@@ -1,17 +1,21 @@
 package org.openvasp.client.model;
 
 import com.fasterxml.jackson.annotation.*;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import lombok.*;
 import org.apache.commons.lang3.StringUtils;
+import org.openvasp.client.common.HexUtils;
 import org.openvasp.client.common.Json;
 import org.openvasp.client.common.VaspException;
-import org.openvasp.client.common.VaspUtils;
 import org.openvasp.client.common.VaspValidationException;
 import org.web3j.utils.Numeric;
 
-import java.util.List;
-import java.util.NoSuchElementException;
+import java.io.IOException;
+import java.util.*;
 
 import static com.google.common.base.Preconditions.checkState;
 
@@ -50,23 +54,27 @@ public abstract class VaspMessage {
         validateNotNull(header.sessionId, "msg.session");
         validateNotNull(header.responseCode, "msg.code");
 
-        val messageId = Numeric.cleanHexPrefix(header.messageId);
-        if (messageId.length() != Header.MSG_ID_LENGTH || !VaspUtils.isValidHex(messageId)) {
+        if (!isValidHex(header.messageId, Header.MSG_ID_LENGTH)) {
             throw new VaspValidationException(this,
                     "The field 'msg.msgid' is invalid - must be a hexadecimal string of length %d, but is: %s",
                     Header.MSG_ID_LENGTH,
-                    messageId);
+                    Numeric.cleanHexPrefix(header.messageId));
         }
 
-        val sessionId = Numeric.cleanHexPrefix(header.sessionId);
-        if (sessionId.length() != Header.SESSION_ID_LENGTH || !VaspUtils.isValidHex(sessionId)) {
+        if (!isValidHex(header.sessionId, Header.SESSION_ID_LENGTH)) {
             throw new VaspValidationException(this,
                     "The field 'msg.session' is invalid - must be a hexadecimal string of length %d, but is: %s",
                     Header.SESSION_ID_LENGTH,
-                    sessionId);
+                    Numeric.cleanHexPrefix(header.sessionId));
         }
     }
 
+    // The length is checked without the optional "0x" prefix
+    private static boolean isValidHex(final String value, final int length) {
+        val start = HexUtils.prefixLength(value);
+        return value.length() - start == length && HexUtils.isValidHex(value, start, length);
+    }
+
     void validateNotNull(final Object obj, @NonNull final String path) {
         if (obj == null) {
             throw new VaspValidationException(
@@ -202,52 +210,99 @@ public abstract class VaspMessage {
         }
     }
 
+    /**
+     * Readers of the concrete message classes, created once since {@link ObjectReader} is immutable
+     * and caches the root deserializer.
+     */
+    private static final Map<TypeDescriptor, ObjectReader> READERS;
+
+    static {
+        val readers = new EnumMap<TypeDescriptor, ObjectReader>(TypeDescriptor.class);
+        readers.put(TypeDescriptor.SESSION_REQUEST, Json.MAPPER.readerFor(SessionRequest.class));
+        readers.put(TypeDescriptor.SESSION_REPLY, Json.MAPPER.readerFor(SessionReply.class));
+        readers.put(TypeDescriptor.TRANSFER_REQUEST, Json.MAPPER.readerFor(TransferRequest.class));
+        readers.put(TypeDescriptor.TRANSFER_REPLY, Json.MAPPER.readerFor(TransferReply.class));
+        readers.put(TypeDescriptor.TRANSFER_DISPATCH, Json.MAPPER.readerFor(TransferDispatch.class));
+        readers.put(TypeDescriptor.TRANSFER_CONFIRMATION, Json.MAPPER.readerFor(TransferConfirmation.class));
+        readers.put(TypeDescriptor.TERMINATION, Json.MAPPER.readerFor(TerminationMessage.class));
+        READERS = Collections.unmodifiableMap(readers);
+    }
+
     @SneakyThrows
     public static VaspMessage fromJson(@NonNull final String str) {
-        val rootNode = Json.readTree(str);
-        val messageTypeStr = extractMessageTypeStr(rootNode);
-        val messageType = TypeDescriptor.fromIdStr(messageTypeStr);
-        final VaspMessage result;
-        switch (messageType) {
-            case SESSION_REQUEST:
-                result = Json.convertValue(SessionRequest.class, rootNode);
-                break;
-            case SESSION_REPLY:
-                result = Json.convertValue(SessionReply.class, rootNode);
-                break;
-            case TRANSFER_REQUEST:
-                result = Json.convertValue(TransferRequest.class, rootNode);
-                break;
-            case TRANSFER_REPLY:
-                result = Json.convertValue(TransferReply.class, rootNode);
-                break;
-            case TRANSFER_DISPATCH:
-                result = Json.convertValue(TransferDispatch.class, rootNode);
-                break;
-            case TRANSFER_CONFIRMATION:
-                result = Json.convertValue(TransferConfirmation.class, rootNode);
-                break;
-            case TERMINATION:
-                result = Json.convertValue(TerminationMessage.class, rootNode);
-                break;
-            default:
-                throw new VaspException("An unknown message type " + messageTypeStr);
+        try (val parser = Json.MAPPER.getFactory().createParser(str)) {
+            return readMessage(parser);
         }
-        return result;
     }
 
-    private static String extractMessageTypeStr(final JsonNode rootNode) {
-        val msgNode = rootNode.findValue("msg");
-        if (msgNode == null) {
-            throw new VaspException("The field 'msg' of a VASP message cannot be null");
+    /**
+     * Read a message straight from the UTF-8 JSON bytes, e.g. from a decoded Whisper payload,
+     * without making an intermediate string.
+     */
+    public static VaspMessage fromJson(@NonNull final byte[] bytes) {
+        return fromJson(bytes, 0, bytes.length);
+    }
+
+    @SneakyThrows
+    public static VaspMessage fromJson(@NonNull final byte[] bytes, final int offset, final int length) {
+        try (val parser = Json.MAPPER.getFactory().createParser(bytes, offset, length)) {
+            return readMessage(parser);
         }
+    }
 
-        val msgTypeNode = msgNode.findValue("type");
-        if (msgTypeNode == null) {
-            throw new VaspException("The field 'msg.type' of a VASP message cannot be null");
+    /**
+     * Read a message in a single pass: the tokens up to the end of the header are buffered
+     * while looking for 'msg.type', then the reader of the concrete class continues
+     * with the buffered tokens followed by the rest of the input.
+     */
+    private static VaspMessage readMessage(final JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new VaspException("A VASP message must be a JSON object");
+        }
+
+        val buffer = new TokenBuffer(parser);
+        buffer.copyCurrentEvent(parser);
+
+        TypeDescriptor messageType = null;
+        while (messageType == null) {
+            if (parser.nextToken() != JsonToken.FIELD_NAME) {
+                throw new VaspException("The field 'msg' of a VASP message cannot be null");
+            }
+
+            val fieldName = parser.getCurrentName();
+            buffer.copyCurrentEvent(parser);
+            if (parser.nextToken() == JsonToken.START_OBJECT && "msg".equals(fieldName)) {
+                messageType = TypeDescriptor.fromIdStr(copyHeader(parser, buffer));
+            } else {
+                buffer.copyCurrentStructure(parser);
+            }
+        }
+
+        val sequence = JsonParserSequence.createFlattened(false, buffer.asParser(parser), parser);
+        sequence.nextToken();
+        return READERS.get(messageType).readValue(sequence);
+    }
+
+    /**
+     * Copy the header object to the buffer
+     *
+     * @return the value of 'msg.type'
+     */
+    private static String copyHeader(final JsonParser parser, final TokenBuffer buffer) throws IOException {
+        buffer.copyCurrentEvent(parser);
+
+        String msgTypeStr = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val fieldName = parser.getCurrentName();
+            buffer.copyCurrentEvent(parser);
+            parser.nextToken();
+            if ("type".equals(fieldName)) {
+                msgTypeStr = parser.getValueAsString();
+            }
+            buffer.copyCurrentStructure(parser);
         }
+        buffer.copyCurrentEvent(parser);
 
-        val msgTypeStr = msgTypeNode.asText();
         if (msgTypeStr == null) {
             throw new VaspException("The field 'msg.type' of a VASP message cannot be null");
         }
@@ -0,0 +1,39 @@
+package org.openvasp.client.service;
+
+import lombok.Value;
+
+/**
+ * Snapshot of the receipt confirmations sent by a VASP instance. The latency of a confirmation
+ * is measured from its queueing at the message receipt till its acceptance by the Whisper node.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@Value
+public class ConfirmationMetrics {
+
+    /**
+     * Number of the confirmations waiting to be sent
+     */
+    long queued;
+
+    /**
+     * Number of the confirmations accepted by the Whisper node
+     */
+    long sent;
+
+    /**
+     * Number of the confirmations not sent due to an error
+     */
+    long failed;
+
+    /**
+     * Mean latency in milliseconds of the sent confirmations
+     */
+    double meanLatencyMs;
+
+    /**
+     * Max latency in milliseconds of the sent confirmations
+     */
+    double maxLatencyMs;
+
+}
@@ -7,12 +7,37 @@ import java.util.function.Consumer;
 /**
  * @author Olexandr_Bilovol@epam.com
  */
-public interface ConfirmationService {
+public interface ConfirmationService extends AutoCloseable {
 
     void registerForConfirmation(VaspMessage message);
 
+    /**
+     * Register the message for confirmation, the retransmission is run while the message stays unconfirmed,
+     * up to the configured number of times. When the confirmation topic is new, the call returns once the topic
+     * is listened to, so the message should be sent after the call.
+     */
+    void registerForConfirmation(VaspMessage message, Runnable retransmission);
+
+    /**
+     * Queue the confirmation of the received message, the queued confirmations are sent in the background.
+     * The handshake key of the sender is looked up at once, so the call is made while the message is handled.
+     */
     void confirmReceipt(VaspMessage message);
 
+    ConfirmationMetrics getConfirmationMetrics();
+
     void setConfirmationHandler(Consumer<VaspMessage> handler);
 
+    /**
+     * Set the handler of the messages, which have not been confirmed in the configured time
+     */
+    void setConfirmationTimeoutHandler(Consumer<VaspMessage> handler);
+
+    /**
+     * Stop the background activities of the service, if any
+     */
+    @Override
+    default void close() {
+    }
+
 }
@@ -7,7 +7,7 @@ import org.openvasp.client.model.VaspContractInfo;
 /**
  * @author Olexandr_Bilovol@epam.com
  */
-public interface ContractService {
+public interface ContractService extends AutoCloseable {
 
     /**
      * Get information about VASP instance.
@@ -27,4 +27,21 @@ public interface ContractService {
      */
     VaspContractInfo getVaspContractInfo(VaspCode vaspCode);
 
+    /**
+     * Drop the cached information about VASP instance, e.g. when its keys are known to be changed.
+     * The next request for the contract loads it from the Ethereum node.
+     * The implementations which do not cache the contracts have nothing to drop.
+     *
+     * @param vaspSmartContractAddress Address of Ethereum smart contract
+     */
+    default void invalidate(EthAddr vaspSmartContractAddress) {
+    }
+
+    /**
+     * Stop the background activities of the service, if any
+     */
+    @Override
+    default void close() {
+    }
+
 }
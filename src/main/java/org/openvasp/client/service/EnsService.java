@@ -2,11 +2,34 @@ package org.openvasp.client.service;
 
 import org.openvasp.client.model.EthAddr;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Olexandr_Bilovol@epam.com
  */
-public interface EnsService {
+public interface EnsService extends AutoCloseable {
 
     EthAddr resolveContractAddress(String contractId);
 
+    /**
+     * Resolve the ENS name without blocking the calling thread.
+     * The default implementation resolves it synchronously.
+     *
+     * @return future completed with the contract address, or exceptionally when the resolution failed
+     */
+    default CompletableFuture<EthAddr> resolveContractAddressAsync(final String contractId) {
+        try {
+            return CompletableFuture.completedFuture(resolveContractAddress(contractId));
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    /**
+     * Stop the resolution threads of the service, if any
+     */
+    @Override
+    default void close() {
+    }
+
 }
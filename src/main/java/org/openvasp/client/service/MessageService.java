@@ -4,6 +4,8 @@ import org.openvasp.client.model.EncryptionType;
 import org.openvasp.client.model.Topic;
 import org.openvasp.client.model.VaspMessage;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Olexandr_Bilovol@epam.com
  */
@@ -15,6 +17,17 @@ public interface MessageService {
             String key,
             VaspMessage message);
 
+    /**
+     * Signs and posts the message without blocking the calling thread.
+     *
+     * @return future completed when the Whisper node has accepted the message
+     */
+    CompletableFuture<Void> sendAsync(
+            Topic topic,
+            EncryptionType encType,
+            String key,
+            VaspMessage message);
+
     long addTopicListener(
             Topic topic,
             EncryptionType encType,
@@ -1,14 +1,73 @@
 package org.openvasp.client.service;
 
+import lombok.NonNull;
+import lombok.Value;
 import org.openvasp.client.model.VaspMessage;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * @author Olexandr_Bilovol@epam.com
  */
-public interface SignService {
+public interface SignService extends AutoCloseable {
 
     String makeSignedPayload(VaspMessage message, String privateKey);
 
+    /**
+     * Prepares the signing with the same key, so the key is parsed once
+     * instead of once per message. The result is thread-safe.
+     */
+    PayloadSigner prepareSigner(String privateKey);
+
     VaspMessage extractSignedMessage(String whisperPayload);
 
+    /**
+     * Decodes and verifies the messages in parallel.
+     *
+     * @return the results in the order of the payloads, a failure of a message does not affect the other ones
+     */
+    List<ExtractedMessage> extractSignedMessages(List<String> whisperPayloads);
+
+    /**
+     * Stop the verification threads of the service, if any
+     */
+    @Override
+    default void close() {
+    }
+
+    @FunctionalInterface
+    interface PayloadSigner {
+
+        String makeSignedPayload(VaspMessage message);
+
+    }
+
+    /**
+     * The result of the extraction of a signed message: either the message or the error
+     */
+    @Value
+    class ExtractedMessage {
+
+        VaspMessage message;
+        RuntimeException error;
+
+        public static ExtractedMessage of(@NonNull final VaspMessage message) {
+            return new ExtractedMessage(message, null);
+        }
+
+        public static ExtractedMessage failed(@NonNull final RuntimeException error) {
+            return new ExtractedMessage(null, error);
+        }
+
+        public Optional<VaspMessage> getMessage() {
+            return Optional.ofNullable(message);
+        }
+
+        public Optional<RuntimeException> getError() {
+            return Optional.ofNullable(error);
+        }
+
+    }
+
 }
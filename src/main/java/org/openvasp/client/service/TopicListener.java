@@ -1,11 +1,16 @@
 package org.openvasp.client.service;
 
 import lombok.NonNull;
+import lombok.val;
 
+import java.util.Collections;
 import java.util.EventListener;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 
+import static java.util.stream.Collectors.toList;
+
 /**
  * @author Olexandr_Bilovol@epam.com
  */
@@ -14,10 +19,40 @@ public interface TopicListener<T> extends EventListener {
 
     void onTopicEvent(TopicEvent<T> event);
 
+    /**
+     * Process the events arrived at once, e.g. with a single poll. The default implementation
+     * processes them one by one, a listener can override it to process the events in bulk.
+     */
+    default void onTopicEvents(@NonNull final List<TopicEvent<T>> events) {
+        events.forEach(this::onTopicEvent);
+    }
+
     default <U> TopicListener<U> map(@NonNull final Function<U, Optional<T>> payloadMapper) {
         return (event) -> payloadMapper
                 .apply(event.getPayload())
                 .ifPresent(payload -> onTopicEvent(new TopicEvent<>(event.getSource(), payload)));
     }
 
+    /**
+     * Same as {@link #map(Function)}, but the payloads arrived at once are mapped in bulk.
+     * The mapper has to return the results in the order of the payloads.
+     */
+    default <U> TopicListener<U> mapAll(@NonNull final Function<List<U>, List<Optional<T>>> payloadsMapper) {
+        return new TopicListener<U>() {
+            @Override
+            public void onTopicEvent(@NonNull final TopicEvent<U> event) {
+                onTopicEvents(Collections.singletonList(event));
+            }
+
+            @Override
+            public void onTopicEvents(@NonNull final List<TopicEvent<U>> events) {
+                val payloads = payloadsMapper.apply(events.stream().map(TopicEvent::getPayload).collect(toList()));
+                for (int i = 0; i < events.size(); i++) {
+                    val source = events.get(i).getSource();
+                    payloads.get(i).ifPresent(payload -> TopicListener.this.onTopicEvent(new TopicEvent<>(source, payload)));
+                }
+            }
+        };
+    }
+
 }
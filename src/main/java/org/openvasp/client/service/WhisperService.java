@@ -4,6 +4,11 @@ import org.openvasp.client.api.whisper.model.ShhMessage;
 import org.openvasp.client.model.EncryptionType;
 import org.openvasp.client.model.Topic;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Olexandr_Bilovol@epam.com
  */
@@ -20,6 +25,17 @@ public interface WhisperService extends AutoCloseable {
             String key,
             String payload);
 
+    /**
+     * Posts the message without blocking the calling thread.
+     *
+     * @return future completed when the Whisper node has accepted the message
+     */
+    CompletableFuture<Void> sendAsync(
+            Topic topic,
+            EncryptionType encType,
+            String key,
+            String payload);
+
     long addTopicListener(
             Topic topic,
             EncryptionType encType,
@@ -30,4 +46,30 @@ public interface WhisperService extends AutoCloseable {
             Topic topic,
             long listenerId);
 
+    /**
+     * Adds the listener to several topics sharing the key at once. The default implementation
+     * adds them one by one, an implementation can update its message filters in bulk.
+     *
+     * @return the listener IDs by the topics
+     */
+    default Map<Topic, Long> addTopicListeners(
+            final Collection<Topic> topics,
+            final EncryptionType encType,
+            final String key,
+            final TopicListener<ShhMessage> listener) {
+
+        final Map<Topic, Long> result = new LinkedHashMap<>();
+        for (final Topic topic : topics) {
+            result.put(topic, addTopicListener(topic, encType, key, listener));
+        }
+        return result;
+    }
+
+    /**
+     * Removes the listeners by the topics at once. The default implementation removes them one by one.
+     */
+    default void removeTopicListeners(final Map<Topic, Long> listenerIds) {
+        listenerIds.forEach(this::removeTopicListener);
+    }
+
 }
@@ -1,94 +1,454 @@
 package org.openvasp.client.service.impl;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.openvasp.client.common.Tuple2;
+import lombok.val;
+import org.openvasp.client.api.whisper.model.ShhMessage;
+import org.openvasp.client.common.ExceptionHandler;
+import org.openvasp.client.common.HashedWheelTimer;
 import org.openvasp.client.common.VaspValidationException;
 import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.model.EncryptionType;
+import org.openvasp.client.model.Topic;
 import org.openvasp.client.model.VaspContractInfo;
 import org.openvasp.client.model.VaspMessage;
+import org.openvasp.client.service.ConfirmationMetrics;
 import org.openvasp.client.service.ConfirmationService;
 import org.openvasp.client.service.ContractService;
+import org.openvasp.client.service.TopicEvent;
+import org.openvasp.client.service.TopicListener;
 import org.openvasp.client.service.VaspIdentityService;
 import org.openvasp.client.service.WhisperService;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
+ * All the confirmation topics are listened to by a single listener under the handshake key,
+ * so they share the message filter of the handshake key, which matches all the topics
+ * (see {@link WhisperFilterManager#matchAllTopics}). An incoming confirmation is matched
+ * to the waiting messages by its topic.
+ * <p>
+ * The topics are added to and removed from the listener by a background worker. The topics registered
+ * or confirmed meanwhile are updated in bulk. A topic comes and goes without a call to the node,
+ * unless the filter of the handshake key has to be created first. A message with a new confirmation topic
+ * waits until the topic is listened to, so an early confirmation is not lost.
+ * The topics failed to be added are retried after a delay while their messages wait for confirmation.
+ * <p>
+ * The deadlines of the waiting messages are kept by a hashed timing wheel. The expired deadlines are handled
+ * by a separate worker, since a retransmission or the timeout handler may block.
+ * An unconfirmed message is retransmitted a bounded number of times, then the timeout handler is called
+ * and the confirmation topic is released.
+ * <p>
+ * The handshake key of the sender is looked up, while the received message is being handled,
+ * e.g. before its session is removed. Then the receipt confirmation is queued and sent by a background sender,
+ * so the receiving thread does not wait for the proof of work. The confirmations queued within a short window
+ * are sent together, every confirmation topic is posted once.
+ *
  * @author Olexandr_Bilovol@epam.com
  */
 @Singleton
 @Slf4j
 public final class ConfirmationServiceImpl implements ConfirmationService {
 
+    private static final long WORKER_KEEP_ALIVE_MS = 60_000;
+    private static final int EXPIRATION_THREADS = 2;
+    private static final long TOPIC_INSTALL_TIMEOUT_MS = 5_000;
+    private static final long TOPIC_RETRY_DELAY_MS = 500;
+    private static final long DEFAULT_CONFIRMATION_TIMEOUT = 30_000;
+    private static final int DEFAULT_CONFIRMATION_RETRANSMISSIONS = 2;
+    private static final long DEFAULT_CONFIRMATION_BATCH_WINDOW = 50;
+    private static final String CONFIRMATION_PAYLOAD = "0x10";
+
+
     private final VaspConfig vaspConfig;
+    private final ExceptionHandler exceptionHandler;
     private final WhisperService whisperService;
     private final ContractService contractService;
     private final VaspIdentityService vaspIdentityService;
+    private final long confirmationTimeout;
+    private final int maxRetransmissions;
+    private final long confirmationBatchWindow;
 
     @Setter
     private Consumer<VaspMessage> confirmationHandler;
 
-    private final Map<String, Tuple2<Long, VaspMessage>> waitingForConfirmation = new ConcurrentHashMap<>();
+    @Setter
+    private Consumer<VaspMessage> confirmationTimeoutHandler;
+
+    // The messages waiting for confirmation by their confirmation topics
+    private final ConcurrentMap<Topic, List<PendingConfirmation>> waitingForConfirmation = new ConcurrentHashMap<>();
+
+    private final TopicListener<ShhMessage> confirmationListener = this::onConfirmation;
+    private final Set<Topic> topicsToAdd = ConcurrentHashMap.newKeySet();
+    private final Set<Topic> topicsToRemove = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean updateScheduled = new AtomicBoolean(false);
+    private final ScheduledThreadPoolExecutor topicWorker;
+
+    // The topics being added to or already in the filters, the future completes once the topic is listened to
+    private final ConcurrentMap<Topic, CompletableFuture<Void>> topicInstallations = new ConcurrentHashMap<>();
+
+    // The listener IDs of the topics in the filters, accessed by the topic worker only
+    private final Map<Topic, Long> topicListenerIds = new HashMap<>();
+
+    private final Queue<Receipt> receiptsToConfirm = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sendScheduled = new AtomicBoolean(false);
+    private final ScheduledThreadPoolExecutor receiptSender;
+
+    // 100 ms ticks, a wheel rotation takes 51.2 s, so the default timeouts take a single round
+    private final HashedWheelTimer confirmationTimer;
+    private final ThreadPoolExecutor expirationWorker;
+
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
 
     @Inject
     public ConfirmationServiceImpl(
             final VaspConfig vaspConfig,
+            final ExceptionHandler exceptionHandler,
             final WhisperService whisperService,
             final ContractService contractService,
             final VaspIdentityService vaspIdentityService) {
 
         this.vaspConfig = vaspConfig;
+        this.exceptionHandler = exceptionHandler;
         this.whisperService = whisperService;
         this.contractService = contractService;
         this.vaspIdentityService = vaspIdentityService;
 
+        this.confirmationTimeout = Optional
+                .ofNullable(vaspConfig.getConfirmationTimeout())
+                .orElse(DEFAULT_CONFIRMATION_TIMEOUT);
+        checkArgument(confirmationTimeout > 0, "confirmationTimeout must be positive");
+        this.maxRetransmissions = Optional
+                .ofNullable(vaspConfig.getConfirmationRetransmissions())
+                .orElse(DEFAULT_CONFIRMATION_RETRANSMISSIONS);
+        checkArgument(maxRetransmissions >= 0, "confirmationRetransmissions must not be negative");
+        this.confirmationBatchWindow = Optional
+                .ofNullable(vaspConfig.getConfirmationBatchWindow())
+                .orElse(DEFAULT_CONFIRMATION_BATCH_WINDOW);
+        checkArgument(confirmationBatchWindow > 0, "confirmationBatchWindow must be positive");
+
+        // The worker thread stops when idle, so it does not outlive the VASP instance for long
+        val topicWorker = new ScheduledThreadPoolExecutor(
+                1,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("ConfirmationTopics-" + vaspConfig.getVaspCode() + "-%d")
+                        .setDaemon(true)
+                        .build());
+        topicWorker.setKeepAliveTime(WORKER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+        topicWorker.allowCoreThreadTimeOut(true);
+        this.topicWorker = topicWorker;
+
+        val receiptSender = new ScheduledThreadPoolExecutor(
+                1,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("ConfirmationSender-" + vaspConfig.getVaspCode() + "-%d")
+                        .setDaemon(true)
+                        .build());
+        receiptSender.setKeepAliveTime(WORKER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+        receiptSender.allowCoreThreadTimeOut(true);
+        this.receiptSender = receiptSender;
+
+        this.confirmationTimer = new HashedWheelTimer(
+                "ConfirmationTimer-" + vaspConfig.getVaspCode(), 100, TimeUnit.MILLISECONDS, 512);
+        val expirationWorker = new ThreadPoolExecutor(
+                EXPIRATION_THREADS, EXPIRATION_THREADS,
+                WORKER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("ConfirmationExpiration-" + vaspConfig.getVaspCode() + "-%d")
+                        .setDaemon(true)
+                        .build());
+        expirationWorker.allowCoreThreadTimeOut(true);
+        this.expirationWorker = expirationWorker;
+
         log.info("Confirmation Service created");
     }
 
+    /**
+     * Stop the timer and the workers, the waiting messages are neither retransmitted nor timed out anymore
+     */
+    @Override
+    public void close() {
+        confirmationTimer.close();
+        expirationWorker.shutdownNow();
+        topicWorker.shutdownNow();
+        receiptSender.shutdownNow();
+    }
+
     @Override
     public void registerForConfirmation(@NonNull final VaspMessage message) {
+        registerForConfirmation(message, null);
+    }
+
+    @Override
+    public void registerForConfirmation(@NonNull final VaspMessage message, final Runnable retransmission) {
         if (!isConfirmationEnabled()) {
             return;
         }
 
-        var messageId = message.getHeader().getMessageId();
-        var confirmationTopic = message.getConfirmationTopic();
+        val pending = new PendingConfirmation(message, retransmission);
+        val confirmationTopic = message.getConfirmationTopic();
+        waitingForConfirmation.compute(confirmationTopic, (topic, messages) -> {
+            val result = messages != null ? messages : new ArrayList<PendingConfirmation>(1);
+            result.add(pending);
+            return result;
+        });
+        pending.schedule();
 
-        var listenerId = whisperService.addTopicListener(
-                confirmationTopic,
-                EncryptionType.ASSYMETRIC,
-                getConfirmationPrivateKey(),
-                whisperMessage -> {
-                    var entry = waitingForConfirmation.get(messageId);
-                    if (entry != null) {
-                        waitingForConfirmation.remove(messageId);
-                        whisperService.removeTopicListener(confirmationTopic, entry._1);
-                        if (confirmationHandler != null) {
-                            confirmationHandler.accept(message);
-                        }
-                    }
-                });
+        val installation = topicInstallations.computeIfAbsent(confirmationTopic, topic -> new CompletableFuture<>());
+        topicsToAdd.add(confirmationTopic);
+        scheduleTopicUpdate();
+        awaitInstallation(confirmationTopic, installation);
+    }
+
+    // The retransmissions cover the case when the topic is still not listened to after the wait
+    private static void awaitInstallation(final Topic confirmationTopic, final CompletableFuture<Void> installation) {
+        if (installation.isDone()) {
+            return;
+        }
 
-        waitingForConfirmation.put(messageId, Tuple2.of(listenerId, message));
+        try {
+            installation.get(TOPIC_INSTALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            log.warn("The confirmation topic {} is not listened to in {} ms, the message is sent anyway",
+                    confirmationTopic, TOPIC_INSTALL_TIMEOUT_MS);
+        }
     }
 
     @Override
     public void confirmReceipt(@NonNull final VaspMessage message) {
-        if (isConfirmationEnabled()) {
-            var confirmationTopic = message.getConfirmationTopic();
-            whisperService.send(
-                    confirmationTopic,
+        if (!isConfirmationEnabled()) {
+            return;
+        }
+
+        final String key;
+        try {
+            key = getConfirmationPublicKey(message);
+        } catch (RuntimeException ex) {
+            failedCount.increment();
+            log.error("Error of confirming the receipt of the message " + message.getHeader().getMessageId(), ex);
+            exceptionHandler.processException(ex);
+            return;
+        }
+
+        receiptsToConfirm.add(new Receipt(key, message.getConfirmationTopic(), System.nanoTime()));
+        queuedCount.increment();
+        if (sendScheduled.compareAndSet(false, true)) {
+            receiptSender.schedule(this::sendConfirmations, confirmationBatchWindow, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public ConfirmationMetrics getConfirmationMetrics() {
+        val sent = sentCount.sum();
+        return new ConfirmationMetrics(
+                queuedCount.sum(),
+                sent,
+                failedCount.sum(),
+                sent > 0 ? nanosToMillis(totalLatencyNanos.sum()) / sent : 0,
+                nanosToMillis(maxLatencyNanos.get()));
+    }
+
+    private void sendConfirmations() {
+        // Reset the flag before taking the receipts, so the receipts queued later schedule a new batch
+        sendScheduled.set(false);
+
+        // A topic is confirmed once per batch
+        val receiptsByKey = new LinkedHashMap<String, Map<Topic, List<Receipt>>>();
+        Receipt receipt;
+        while ((receipt = receiptsToConfirm.poll()) != null) {
+            queuedCount.decrement();
+            receiptsByKey
+                    .computeIfAbsent(receipt.key, key -> new LinkedHashMap<>())
+                    .computeIfAbsent(receipt.topic, topic -> new ArrayList<>(1))
+                    .add(receipt);
+        }
+
+        receiptsByKey.forEach((key, receiptsByTopic) -> receiptsByTopic.forEach((topic, receipts) -> {
+            try {
+                whisperService
+                        .sendAsync(topic, EncryptionType.ASSYMETRIC, key, CONFIRMATION_PAYLOAD)
+                        .whenComplete((result, ex) -> onConfirmationSent(topic, receipts, ex));
+            } catch (RuntimeException ex) {
+                onConfirmationSent(topic, receipts, ex);
+            }
+        }));
+    }
+
+    private void onConfirmationSent(final Topic topic, final List<Receipt> receipts, final Throwable error) {
+        if (error != null) {
+            failedCount.add(receipts.size());
+            log.error("Error of sending the confirmation at the topic " + topic, error);
+            return;
+        }
+
+        val now = System.nanoTime();
+        for (val receipt : receipts) {
+            val latency = now - receipt.queuedAt;
+            sentCount.increment();
+            totalLatencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+        log.debug("The confirmation at the topic {} is sent in {} ms",
+                topic, nanosToMillis(now - receipts.get(0).queuedAt));
+    }
+
+    private static double nanosToMillis(final long nanos) {
+        return nanos / 1e6;
+    }
+
+    private void onConfirmation(final TopicEvent<ShhMessage> event) {
+        val confirmationTopic = event.getSource();
+        val messages = waitingForConfirmation.remove(confirmationTopic);
+        if (messages == null) {
+            return;
+        }
+
+        topicsToRemove.add(confirmationTopic);
+        scheduleTopicUpdate();
+
+        for (val pending : messages) {
+            // The message might have timed out meanwhile
+            if (pending.complete() && confirmationHandler != null) {
+                confirmationHandler.accept(pending.message);
+            }
+        }
+    }
+
+    private void onTimeout(final PendingConfirmation pending) {
+        val confirmationTopic = pending.message.getConfirmationTopic();
+        val messages = waitingForConfirmation.computeIfPresent(confirmationTopic, (topic, list) -> {
+            list.remove(pending);
+            return list.isEmpty() ? null : list;
+        });
+
+        if (messages == null) {
+            topicsToRemove.add(confirmationTopic);
+            scheduleTopicUpdate();
+        }
+
+        log.warn("The message {} has not been confirmed in {} ms",
+                pending.message.getHeader().getMessageId(), confirmationTimeout);
+        if (confirmationTimeoutHandler != null) {
+            confirmationTimeoutHandler.accept(pending.message);
+        }
+    }
+
+    private void scheduleTopicUpdate() {
+        if (updateScheduled.compareAndSet(false, true)) {
+            topicWorker.execute(this::updateTopics);
+        }
+    }
+
+    private void updateTopics() {
+        // Reset the flag before taking the topics, so the topics queued later schedule a new update
+        updateScheduled.set(false);
+
+        val confirmedListenerIds = new HashMap<Topic, Long>();
+        for (val topic : drain(topicsToRemove)) {
+            // The topic might have been registered again after its confirmation
+            if (!waitingForConfirmation.containsKey(topic)) {
+                topicInstallations.remove(topic);
+                if (topicListenerIds.containsKey(topic)) {
+                    confirmedListenerIds.put(topic, topicListenerIds.remove(topic));
+                }
+            }
+        }
+
+        val newTopics = new ArrayList<Topic>();
+        for (val topic : drain(topicsToAdd)) {
+            if (!waitingForConfirmation.containsKey(topic)) {
+                continue;
+            }
+
+            if (topicListenerIds.containsKey(topic)) {
+                markInstalled(topic);
+            } else {
+                newTopics.add(topic);
+            }
+        }
+
+        try {
+            if (!confirmedListenerIds.isEmpty()) {
+                whisperService.removeTopicListeners(confirmedListenerIds);
+            }
+        } catch (RuntimeException ex) {
+            log.error("Error of removing the confirmation topics " + confirmedListenerIds.keySet(), ex);
+        }
+
+        if (newTopics.isEmpty()) {
+            return;
+        }
+
+        final Map<Topic, Long> newListenerIds;
+        try {
+            newListenerIds = whisperService.addTopicListeners(
+                    newTopics,
                     EncryptionType.ASSYMETRIC,
-                    getConfirmationPublicKey(message),
-                    "0x10");
+                    getConfirmationPrivateKey(),
+                    confirmationListener);
+        } catch (RuntimeException ex) {
+            // The topics are dropped at the retry, if their messages are not waiting anymore
+            log.error("Error of adding the confirmation topics " + newTopics + ", retrying in "
+                    + TOPIC_RETRY_DELAY_MS + " ms", ex);
+            topicsToAdd.addAll(newTopics);
+            topicWorker.schedule(this::scheduleTopicUpdate, TOPIC_RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+            return;
         }
+
+        topicListenerIds.putAll(newListenerIds);
+        newListenerIds.keySet().forEach(this::markInstalled);
+    }
+
+    private void markInstalled(final Topic topic) {
+        val installation = topicInstallations.get(topic);
+        if (installation != null) {
+            installation.complete(null);
+        }
+    }
+
+    private static List<Topic> drain(final Set<Topic> topics) {
+        val result = new ArrayList<Topic>();
+        val iterator = topics.iterator();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+            iterator.remove();
+        }
+        return result;
     }
 
     private String getConfirmationPrivateKey() {
@@ -106,4 +466,83 @@ public final class ConfirmationServiceImpl implements ConfirmationService {
         return Boolean.TRUE.equals(vaspConfig.getAcknowledgmentEnabled());
     }
 
+    private static final class Receipt {
+
+        private final String key;
+        private final Topic topic;
+        private final long queuedAt;
+
+        Receipt(final String key, final Topic topic, final long queuedAt) {
+            this.key = key;
+            this.topic = topic;
+            this.queuedAt = queuedAt;
+        }
+
+    }
+
+    private final class PendingConfirmation {
+
+        private final VaspMessage message;
+        private final Runnable retransmission;
+        // Decides the race between the confirmation and the timeout
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+
+        // Accessed by one expiration at a time, the next one is scheduled at the end of the previous one
+        private int retransmissions;
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        PendingConfirmation(final VaspMessage message, final Runnable retransmission) {
+            this.message = message;
+            this.retransmission = retransmission;
+        }
+
+        void schedule() {
+            // The retransmissions split the timeout into equal intervals
+            val interval = retransmission != null
+                    ? confirmationTimeout / (maxRetransmissions + 1)
+                    : confirmationTimeout;
+            // The timer thread only hands the expiration over, so the timer tasks do not block
+            timeout = confirmationTimer.newTimeout(this::onExpired, interval, TimeUnit.MILLISECONDS);
+        }
+
+        boolean complete() {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
+            }
+
+            timeout.cancel();
+            return true;
+        }
+
+        private void onExpired() {
+            try {
+                expirationWorker.execute(this::expire);
+            } catch (RejectedExecutionException ex) {
+                // The service is closed
+                log.debug("The expiration of the message {} is dropped", message.getHeader().getMessageId());
+            }
+        }
+
+        private void expire() {
+            if (completed.get() || expirationWorker.isShutdown()) {
+                return;
+            }
+
+            if (retransmission != null && retransmissions < maxRetransmissions) {
+                retransmissions++;
+                log.debug("Retransmit the unconfirmed message {}, attempt {}",
+                        message.getHeader().getMessageId(), retransmissions);
+                try {
+                    retransmission.run();
+                } catch (RuntimeException ex) {
+                    log.warn("Error of retransmitting the message " + message.getHeader().getMessageId(), ex);
+                }
+                schedule();
+            } else if (completed.compareAndSet(false, true)) {
+                onTimeout(this);
+            }
+        }
+
+    }
+
 }
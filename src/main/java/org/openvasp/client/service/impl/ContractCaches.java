@@ -0,0 +1,85 @@
+package org.openvasp.client.service.impl;
+
+import lombok.val;
+import org.openvasp.client.common.RefreshingCache;
+import org.openvasp.client.common.SnapshotFile;
+import org.openvasp.client.config.VaspConfig;
+
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Factory of the caches of the values read from the Ethereum node, configured by the contract cache settings
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+final class ContractCaches {
+
+    private static final int DEFAULT_CACHE_MAX_SIZE = 10000;
+    private static final long DEFAULT_CACHE_TTL = 24 * 60 * 60 * 1000L;
+    private static final long DEFAULT_CACHE_REFRESH_INTERVAL = 60 * 60 * 1000L;
+
+    private ContractCaches() {
+    }
+
+    /**
+     * Create the cache bounded by {@link VaspConfig#getContractCacheMaxSize()},
+     * {@link VaspConfig#getContractCacheTtl()} and {@link VaspConfig#getContractCacheRefreshInterval()}.
+     * When {@link VaspConfig#getContractCacheDir()} is set, the cache is preloaded from the snapshot file
+     * with the given name and the snapshot follows the cache: every loaded value is written through to it
+     * and every invalidated, evicted or expired entry is removed from it.
+     */
+    static <K, V> RefreshingCache<K, V> newCache(
+            final VaspConfig vaspConfig,
+            final String snapshotFileName,
+            final Class<K> keyType,
+            final Class<V> valueType,
+            final Function<? super K, ? extends CompletionStage<V>> loader) {
+
+        val maxSize = Optional
+                .ofNullable(vaspConfig.getContractCacheMaxSize())
+                .orElse(DEFAULT_CACHE_MAX_SIZE);
+        checkArgument(maxSize > 0, "contractCacheMaxSize must be positive");
+        val ttl = Optional
+                .ofNullable(vaspConfig.getContractCacheTtl())
+                .orElse(DEFAULT_CACHE_TTL);
+        checkArgument(ttl > 0, "contractCacheTtl must be positive");
+        val refreshInterval = Optional
+                .ofNullable(vaspConfig.getContractCacheRefreshInterval())
+                .orElse(DEFAULT_CACHE_REFRESH_INTERVAL);
+        checkArgument(refreshInterval > 0, "contractCacheRefreshInterval must be positive");
+
+        if (vaspConfig.getContractCacheDir() == null) {
+            return new RefreshingCache<>(maxSize, ttl, refreshInterval, loader);
+        }
+
+        val snapshot = new SnapshotFile<>(
+                Paths.get(vaspConfig.getContractCacheDir(), snapshotFileName),
+                keyType,
+                valueType);
+        final RefreshingCache<K, V> result = new RefreshingCache<>(
+                maxSize,
+                ttl,
+                refreshInterval,
+                loader,
+                new RefreshingCache.Listener<K, V>() {
+                    @Override
+                    public void onCached(final K key, final V value) {
+                        snapshot.write(key, value);
+                    }
+
+                    @Override
+                    public void onRemoved(final K key) {
+                        snapshot.remove(key);
+                    }
+                });
+        // The entries over the max size are evicted, so removed from the snapshot
+        snapshot.load().forEach(result::preload);
+        return result;
+    }
+
+}
@@ -1,24 +1,42 @@
 package org.openvasp.client.service.impl;
 
 import lombok.NonNull;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.bouncycastle.util.encoders.Hex;
+import org.openvasp.client.common.RefreshingCache;
+import org.openvasp.client.common.VaspException;
 import org.openvasp.client.common.annotation.ContractNode;
+import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.contract.VASP;
 import org.openvasp.client.model.*;
 import org.openvasp.client.service.ContractService;
 import org.openvasp.client.service.EnsService;
-import org.web3j.crypto.Credentials;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Bytes4;
+import org.web3j.abi.datatypes.generated.Uint8;
 import org.web3j.protocol.Web3j;
-import org.web3j.tx.gas.DefaultGasProvider;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.toList;
 
 /**
  * @author Jan_Juraszek@epam.com
@@ -28,63 +46,189 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public final class ContractServiceImpl implements ContractService {
 
+    private static final Function POSTAL_ADDRESS = getter(VASP.FUNC_POSTALADDRESS,
+            new TypeReference<Utf8String>() {},
+            new TypeReference<Utf8String>() {},
+            new TypeReference<Utf8String>() {},
+            new TypeReference<Utf8String>() {},
+            new TypeReference<Utf8String>() {},
+            new TypeReference<Utf8String>() {});
+    private static final Function NAME = getter(VASP.FUNC_NAME, new TypeReference<Utf8String>() {});
+    private static final Function CODE = getter(VASP.FUNC_CODE, new TypeReference<Bytes4>() {});
+    private static final Function CHANNELS = getter(VASP.FUNC_CHANNELS, new TypeReference<DynamicArray<Uint8>>() {});
+    private static final Function HANDSHAKE_KEY = getter(VASP.FUNC_HANDSHAKEKEY, new TypeReference<Utf8String>() {});
+    private static final Function SIGNING_KEY = getter(VASP.FUNC_SIGNINGKEY, new TypeReference<Utf8String>() {});
+    private static final Function OWNER = getter(VASP.FUNC_OWNER, new TypeReference<Address>() {});
+    private static final Function EMAIL = getter(VASP.FUNC_EMAIL, new TypeReference<Utf8String>() {});
+    private static final Function WEBSITE = getter(VASP.FUNC_WEBSITE, new TypeReference<Utf8String>() {});
+
+    private static final List<Function> CONTRACT_GETTERS = List.of(
+            POSTAL_ADDRESS, NAME, CODE, CHANNELS, HANDSHAKE_KEY, SIGNING_KEY, OWNER, EMAIL, WEBSITE);
+
+    // The getters have no arguments, so the call data is the same for all the contracts
+    private static final List<String> CALL_DATA = CONTRACT_GETTERS.stream()
+            .map(FunctionEncoder::encode)
+            .collect(toList());
+
+    private static final String SNAPSHOT_FILE_NAME = "contracts.jsonl";
+
     private final Web3j web3j;
     private final EnsService ensService;
-    private final Map<EthAddr, VaspContractInfo> cache = new ConcurrentHashMap<>();
+    private final RefreshingCache<EthAddr, VaspContractInfo> cache;
+    private final ContractWatcher watcher;
 
     @Inject
-    public ContractServiceImpl(@ContractNode final Web3j web3j, final EnsService ensService) {
+    public ContractServiceImpl(
+            final VaspConfig vaspConfig,
+            @ContractNode final Web3j web3j,
+            final EnsService ensService) {
+
         this.web3j = web3j;
         this.ensService = ensService;
+        this.cache = ContractCaches.newCache(
+                vaspConfig,
+                SNAPSHOT_FILE_NAME,
+                EthAddr.class,
+                VaspContractInfo.class,
+                this::loadContractInfo);
+
+        val watchInterval = vaspConfig.getContractWatchInterval();
+        if (watchInterval != null) {
+            checkArgument(watchInterval > 0, "contractWatchInterval must be positive");
+            this.watcher = new ContractWatcher(web3j, cache);
+            watcher.start(watchInterval);
+        } else {
+            this.watcher = null;
+        }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    @SneakyThrows
     public VaspContractInfo getVaspContractInfo(@NonNull final EthAddr vaspSmartContracAddress) {
-        VaspContractInfo result = cache.get(vaspSmartContracAddress);
-        if (result != null) {
+        return cache.get(vaspSmartContracAddress);
+    }
+
+    @Override
+    public VaspContractInfo getVaspContractInfo(@NonNull final VaspCode vaspCode) {
+        // See section 5.4 of OpenVasp_Whitepaper.pdf for an example
+        // of conversion a VASP code to the corresponding ENS name
+        val ensContractId = vaspCode + ".eth";
+        return getVaspContractInfo(ensService.resolveContractAddress(ensContractId));
+    }
+
+    @Override
+    public void invalidate(@NonNull final EthAddr vaspSmartContractAddress) {
+        cache.invalidate(vaspSmartContractAddress);
+    }
+
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.close();
+        }
+        // The expired contracts are removed from the snapshot, so not preloaded at the next start
+        cache.cleanUp();
+    }
+
+    /**
+     * Load the contract information with two round trips: eth_blockNumber and then a JSON-RPC batch
+     * of eth_call's for all the getters, pinned to that block, so the fields are consistent with each other.
+     */
+    CompletableFuture<VaspContractInfo> loadContractInfo(final EthAddr contractAddress) {
+        log.debug("Request for the contract info at the address {}", contractAddress);
+
+        return web3j.ethBlockNumber().sendAsync().thenCompose(blockNumber -> {
+            checkResponse(blockNumber, "eth_blockNumber", contractAddress);
+
+            val block = DefaultBlockParameter.valueOf(blockNumber.getBlockNumber());
+            val batch = web3j.newBatch();
+            for (val callData : CALL_DATA) {
+                val transaction = Transaction.createEthCallTransaction(null, contractAddress.getData(), callData);
+                batch.add(web3j.ethCall(transaction, block));
+            }
+
+            return batch.sendAsync();
+        }).thenApply(batchResponse -> {
+            val result = toContractInfo(contractAddress, batchResponse);
+            log.debug("The contract information received, VASP code = {}", result.getVaspCode());
             return result;
+        });
+    }
+
+    private static VaspContractInfo toContractInfo(final EthAddr contractAddress, final BatchResponse batchResponse) {
+        // JSON-RPC allows the batch responses in any order, so they are matched by the request IDs
+        val responses = new HashMap<Long, Response<?>>();
+        for (val response : batchResponse.getResponses()) {
+            responses.put(response.getId(), response);
         }
 
-        log.debug("Request for the contract info at the address {}", vaspSmartContracAddress);
+        val results = new IdentityHashMap<Function, List<Type>>();
+        val requests = batchResponse.getRequests();
+        for (int i = 0; i < CONTRACT_GETTERS.size(); i++) {
+            val getter = CONTRACT_GETTERS.get(i);
+            val response = responses.get(requests.get(i).getId());
+            if (!(response instanceof EthCall)) {
+                throw new VaspException("No response to %s() of the contract at %s", getter.getName(), contractAddress);
+            }
 
-        val contract = VASP.load(vaspSmartContracAddress.getData(), web3j, Credentials.create("0x0"), new DefaultGasProvider());
+            val ethCall = (EthCall) response;
+            checkResponse(ethCall, getter.getName() + "()", contractAddress);
+            if (ethCall.isReverted()) {
+                throw new VaspException("The call of %s() of the contract at %s is reverted: %s",
+                        getter.getName(), contractAddress, ethCall.getRevertReason());
+            }
 
-        val postalAddress = contract.postalAddress().send();
+            val decoded = FunctionReturnDecoder.decode(ethCall.getValue(), getter.getOutputParameters());
+            if (decoded.size() != getter.getOutputParameters().size()) {
+                throw new VaspException("No VASP contract at the address %s", contractAddress);
+            }
+            results.put(getter, decoded);
+        }
+
+        val postalAddress = results.get(POSTAL_ADDRESS);
         val address = PostalAddress.builder()
-                .street(postalAddress.component1())
-                .number(postalAddress.component2())
-                .adrline(postalAddress.component3())
-                .postCode(postalAddress.component4())
-                .town(postalAddress.component5())
-                .country(Country.ALL.get(postalAddress.component6()))
+                .street(stringValue(postalAddress, 0))
+                .number(stringValue(postalAddress, 1))
+                .adrline(stringValue(postalAddress, 2))
+                .postCode(stringValue(postalAddress, 3))
+                .town(stringValue(postalAddress, 4))
+                .country(Country.ALL.get(stringValue(postalAddress, 5)))
                 .build();
 
-        result = VaspContractInfo.builder()
-                .name(contract.name().send())
-                .vaspCode(new VaspCode(Hex.toHexString(contract.code().send())))
-                .channels((List<Long>) contract.channels().send())
-                .handshakeKey(contract.handshakeKey().send())
-                .signingKey(contract.signingKey().send())
-                .ownerAddress(contract.owner().send())
-                .email(contract.email().send())
-                .website(contract.website().send())
+        return VaspContractInfo.builder()
+                .name(stringValue(results.get(NAME), 0))
+                .vaspCode(new VaspCode(Hex.toHexString((byte[]) results.get(CODE).get(0).getValue())))
+                .channels(channels(results.get(CHANNELS)))
+                .handshakeKey(stringValue(results.get(HANDSHAKE_KEY), 0))
+                .signingKey(stringValue(results.get(SIGNING_KEY), 0))
+                .ownerAddress(stringValue(results.get(OWNER), 0))
+                .email(stringValue(results.get(EMAIL), 0))
+                .website(stringValue(results.get(WEBSITE), 0))
                 .address(address)
                 .build();
-        cache.putIfAbsent(vaspSmartContracAddress, result);
+    }
 
-        log.debug("The contract information received, VASP code = {}", result.getVaspCode());
+    @SuppressWarnings("unchecked")
+    private static List<Long> channels(final List<Type> result) {
+        val channels = (List<Uint8>) result.get(0).getValue();
+        return channels.stream()
+                .map(Uint8::getValue)
+                .map(BigInteger::longValue)
+                .collect(toList());
+    }
 
-        return result;
+    private static String stringValue(final List<Type> result, final int index) {
+        return result.get(index).toString();
     }
 
-    @Override
-    public VaspContractInfo getVaspContractInfo(@NonNull final VaspCode vaspCode) {
-        // See section 5.4 of OpenVasp_Whitepaper.pdf for an example
-        // of conversion a VASP code to the corresponding ENS name
-        val ensContractId = vaspCode + ".eth";
-        return getVaspContractInfo(ensService.resolveContractAddress(ensContractId));
+    private static void checkResponse(final Response<?> response, final String call, final EthAddr contractAddress) {
+        if (response.hasError()) {
+            throw new VaspException("Error of %s for the contract at %s: %s",
+                    call, contractAddress, response.getError().getMessage());
+        }
+    }
+
+    private static Function getter(final String name, final TypeReference<?>... outputParameters) {
+        return new Function(name, Collections.emptyList(), Arrays.asList(outputParameters));
     }
 
 }
@@ -0,0 +1,205 @@
+package org.openvasp.client.service.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.openvasp.client.common.RefreshingCache;
+import org.openvasp.client.common.VaspException;
+import org.openvasp.client.contract.VASP;
+import org.openvasp.client.model.EthAddr;
+import org.openvasp.client.model.VaspContractInfo;
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthLog;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Checks the cached VASP contracts against the Ethereum node and reloads the changed ones.
+ * <p>
+ * The VASP contract emits the events on ownership transfers only, its setters emit nothing.
+ * So each new block is fetched once with its transactions by eth_getBlockByNumber, and the cached contracts
+ * called by a transaction of the block are reloaded with all their fields. The new OwnershipTransferred logs
+ * of the cached contracts, fetched with one eth_getLogs per check, also cover the transfers made by other
+ * contracts. A setter called by another contract, e.g. a multisig wallet owning the VASP contract, is not
+ * seen by the watcher, such a change is picked up by the cache refresh only.
+ * Nothing is requested but eth_blockNumber while no new block is mined. When too many blocks are mined
+ * since the previous check, e.g. after a downtime, all the cached contracts are reloaded instead.
+ * The contracts are reloaded in place, the cached values are served until the reload completes.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@Slf4j
+final class ContractWatcher implements AutoCloseable {
+
+    private static final int BLOCKS_PER_BATCH = 20;
+    // Reloading all the contracts is cheaper than fetching more blocks with all their transactions
+    static final long MAX_CATCH_UP_BLOCKS = 100;
+
+    private static final String OWNERSHIP_TRANSFERRED = EventEncoder.encode(VASP.OWNERSHIPTRANSFERRED_EVENT);
+
+    private final Web3j web3j;
+    private final RefreshingCache<EthAddr, VaspContractInfo> cache;
+    private final ScheduledExecutorService executor;
+
+    // The last checked block, accessed by the watcher thread only
+    private BigInteger lastBlock;
+
+    ContractWatcher(final Web3j web3j, final RefreshingCache<EthAddr, VaspContractInfo> cache) {
+        this.web3j = web3j;
+        this.cache = cache;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("ContractWatcher-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    void start(final long msInterval) {
+        // The first check only remembers the current block, so the blocks mined after the start are checked
+        executor.scheduleWithFixedDelay(this::checkSafely, 0, msInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Check the blocks mined since the previous check and start the reload of the cached contracts changed there
+     *
+     * @return the addresses of the reloaded contracts
+     */
+    Set<EthAddr> check() throws IOException {
+        val blockNumber = web3j.ethBlockNumber().send();
+        checkResponse(blockNumber, "eth_blockNumber");
+        val block = blockNumber.getBlockNumber();
+        if (lastBlock != null && block.compareTo(lastBlock) <= 0) {
+            return Collections.emptySet();
+        }
+
+        val contracts = cache.entries().keySet();
+        if (lastBlock == null || contracts.isEmpty()) {
+            lastBlock = block;
+            return Collections.emptySet();
+        }
+
+        val fromBlock = lastBlock.add(BigInteger.ONE);
+        val changed = new HashSet<EthAddr>();
+        val newBlocks = block.subtract(lastBlock);
+        if (newBlocks.compareTo(BigInteger.valueOf(MAX_CATCH_UP_BLOCKS)) > 0) {
+            log.info("{} blocks are mined since the last check, reloading all the cached VASP contracts", newBlocks);
+            changed.addAll(contracts);
+        } else {
+            changed.addAll(calledContracts(contracts, fromBlock, block));
+            changed.addAll(transferredOwnership(contracts, fromBlock, block));
+        }
+
+        for (val address : changed) {
+            log.info("The VASP contract at {} might be changed, reloading it", address);
+            cache.refresh(address).whenComplete((contractInfo, error) -> {
+                if (error != null) {
+                    log.warn("Reload of the VASP contract at {} failed", address, error);
+                }
+            });
+        }
+
+        lastBlock = block;
+        return changed;
+    }
+
+    private void checkSafely() {
+        try {
+            check();
+        } catch (Exception ex) {
+            log.warn("Check of the cached VASP contracts failed", ex);
+        }
+    }
+
+    private Set<EthAddr> calledContracts(
+            final Set<EthAddr> addresses,
+            final BigInteger fromBlock,
+            final BigInteger toBlock) throws IOException {
+
+        // The node may return the checksum addresses
+        val cached = new HashMap<String, EthAddr>();
+        addresses.forEach(address -> cached.put(address.getData().toLowerCase(), address));
+
+        val result = new HashSet<EthAddr>();
+        BigInteger chunkStart = fromBlock;
+        while (chunkStart.compareTo(toBlock) <= 0) {
+            val batch = web3j.newBatch();
+            BigInteger number = chunkStart;
+            for (int i = 0; i < BLOCKS_PER_BATCH && number.compareTo(toBlock) <= 0; i++) {
+                batch.add(web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(number), true));
+                number = number.add(BigInteger.ONE);
+            }
+            chunkStart = number;
+
+            for (val response : batch.send().getResponses()) {
+                if (!(response instanceof EthBlock)) {
+                    throw new VaspException("No response to eth_getBlockByNumber");
+                }
+
+                val ethBlock = (EthBlock) response;
+                checkResponse(ethBlock, "eth_getBlockByNumber");
+                // The block is checked again at the next check
+                if (ethBlock.getBlock() == null) {
+                    throw new VaspException("The block is not available yet");
+                }
+
+                for (val transaction : ethBlock.getBlock().getTransactions()) {
+                    val to = ((EthBlock.TransactionObject) transaction).getTo();
+                    if (to != null && cached.containsKey(to.toLowerCase())) {
+                        result.add(cached.get(to.toLowerCase()));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private Set<EthAddr> transferredOwnership(
+            final Set<EthAddr> addresses,
+            final BigInteger fromBlock,
+            final BigInteger toBlock) throws IOException {
+
+        val filter = new EthFilter(
+                DefaultBlockParameter.valueOf(fromBlock),
+                DefaultBlockParameter.valueOf(toBlock),
+                addresses.stream().map(EthAddr::getData).collect(toList()));
+        filter.addSingleTopic(OWNERSHIP_TRANSFERRED);
+
+        val ethLog = web3j.ethGetLogs(filter).send();
+        checkResponse(ethLog, "eth_getLogs");
+
+        val result = new HashSet<EthAddr>();
+        for (val logResult : ethLog.getLogs()) {
+            val address = ((EthLog.LogObject) logResult).getAddress();
+            addresses.stream()
+                    .filter(cached -> cached.getData().equalsIgnoreCase(address))
+                    .forEach(result::add);
+        }
+        return result;
+    }
+
+    private static void checkResponse(final Response<?> response, final String call) {
+        if (response.hasError()) {
+            throw new VaspException("Error of %s: %s", call, response.getError().getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.openvasp.client.service.impl;
+
+import lombok.NonNull;
+import lombok.val;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Remembers the IDs seen during the recent time window, e.g. the Whisper envelope hashes
+ * or the VASP message IDs, so that the re-delivered messages can be dropped with a hash lookup.
+ * <p>
+ * The IDs are kept in two generations, each one covering the window length. An ID is remembered
+ * at least for the window length and at most for twice of it. The memory is bounded by
+ * the max number of IDs per generation: when it is exceeded the generations are rotated earlier.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+final class DuplicateFilter {
+
+    private final long window;
+    private final int maxSize;
+    private final LongSupplier clock;
+
+    private Set<String> current = new HashSet<>();
+    private Set<String> previous = new HashSet<>();
+    private long currentStart;
+
+    DuplicateFilter(final long msWindow, final int maxSize) {
+        this(msWindow, maxSize, System::currentTimeMillis);
+    }
+
+    DuplicateFilter(final long msWindow, final int maxSize, @NonNull final LongSupplier clock) {
+        checkArgument(msWindow > 0, "msWindow must be positive");
+        checkArgument(maxSize > 0, "maxSize must be positive");
+        this.window = msWindow;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.currentStart = clock.getAsLong();
+    }
+
+    synchronized boolean contains(@NonNull final String id) {
+        rotate();
+        return current.contains(id) || previous.contains(id);
+    }
+
+    /**
+     * @return false if the ID has already been seen within the window
+     */
+    synchronized boolean add(@NonNull final String id) {
+        rotate();
+        if (current.contains(id) || previous.contains(id)) {
+            return false;
+        }
+
+        if (current.size() >= maxSize) {
+            shift(clock.getAsLong());
+        }
+        return current.add(id);
+    }
+
+    synchronized int size() {
+        return current.size() + previous.size();
+    }
+
+    private void rotate() {
+        val now = clock.getAsLong();
+        if (now - currentStart >= 2 * window) {
+            // Both generations are expired
+            previous = new HashSet<>();
+            current = new HashSet<>();
+            currentStart = now;
+        } else if (now - currentStart >= window) {
+            // Keep the generations aligned to the window, so no ID outlives twice of it
+            shift(currentStart + window);
+        }
+    }
+
+    private void shift(final long now) {
+        previous = current;
+        current = new HashSet<>();
+        currentStart = now;
+    }
+
+}
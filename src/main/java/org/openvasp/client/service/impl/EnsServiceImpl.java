@@ -1,10 +1,15 @@
 package org.openvasp.client.service.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.NonNull;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.openvasp.client.common.RefreshingCache;
 import org.openvasp.client.common.VaspException;
 import org.openvasp.client.common.annotation.ContractNode;
+import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.model.EthAddr;
 import org.openvasp.client.service.EnsService;
 import org.web3j.ens.EnsResolutionException;
@@ -13,8 +18,13 @@ import org.web3j.protocol.Web3j;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Olexandr_Bilovol@epam.com
@@ -23,38 +33,140 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public final class EnsServiceImpl implements EnsService {
 
+    private static final String SNAPSHOT_FILE_NAME = "ens.jsonl";
     private static final int MAX_ATTEMPTS = 4;
-    private static final long ATTEMPT_TIMEOUT_MS = 500;
+    private static final long FIRST_RETRY_DELAY_MS = 250;
+    private static final long NEGATIVE_CACHE_TTL_MS = 30_000;
+    private static final int NEGATIVE_CACHE_MAX_SIZE = 1000;
+    private static final int RESOLUTION_THREADS = 4;
+    private static final int RESOLUTION_QUEUE_SIZE = 1000;
+    private static final long WORKER_KEEP_ALIVE_MS = 60_000;
+
+    // EnsResolver is blocking, so the resolutions and the background refreshes run in their own threads
+    private final ThreadPoolExecutor resolutionExecutor;
+
+    // The delays between the attempts do not occupy any threads
+    private final ScheduledThreadPoolExecutor retryScheduler;
 
     private final EnsResolver ensResolver;
-    private final Map<String, EthAddr> cache = new ConcurrentHashMap<>();
+    private final RefreshingCache<String, EthAddr> cache;
+
+    // The names failed to resolve recently, so the callers do not wait for all the attempts again
+    private final Cache<String, VaspException> failures = CacheBuilder.newBuilder()
+            .maximumSize(NEGATIVE_CACHE_MAX_SIZE)
+            .expireAfterWrite(NEGATIVE_CACHE_TTL_MS, TimeUnit.MILLISECONDS)
+            .build();
 
     @Inject
-    public EnsServiceImpl(@ContractNode final Web3j web3j) {
+    public EnsServiceImpl(final VaspConfig vaspConfig, @ContractNode final Web3j web3j) {
         this.ensResolver = new EnsResolver(web3j);
+
+        val resolutionExecutor = new ThreadPoolExecutor(
+                RESOLUTION_THREADS, RESOLUTION_THREADS,
+                WORKER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(RESOLUTION_QUEUE_SIZE),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("EnsResolution-%d")
+                        .setDaemon(true)
+                        .build());
+        resolutionExecutor.allowCoreThreadTimeOut(true);
+        this.resolutionExecutor = resolutionExecutor;
+
+        val retryScheduler = new ScheduledThreadPoolExecutor(
+                1,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("EnsRetry-%d")
+                        .setDaemon(true)
+                        .build());
+        retryScheduler.setKeepAliveTime(WORKER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+        retryScheduler.allowCoreThreadTimeOut(true);
+        this.retryScheduler = retryScheduler;
+
+        this.cache = ContractCaches.newCache(
+                vaspConfig,
+                SNAPSHOT_FILE_NAME,
+                String.class,
+                EthAddr.class,
+                this::resolve);
     }
 
     @Override
-    @SneakyThrows
     public EthAddr resolveContractAddress(@NonNull final String contractId) {
-        EthAddr result = cache.get(contractId);
-        EnsResolutionException ensResolutionException = null;
-        for (int i = 1; result == null && i <= MAX_ATTEMPTS; i++) {
-            try {
-                result = new EthAddr(ensResolver.resolve(contractId));
-            } catch (EnsResolutionException ex) {
-                log.warn("Attempt {} to resolve ENS ID {} failed", i, contractId);
-                ensResolutionException = ex;
-                Thread.sleep(ATTEMPT_TIMEOUT_MS);
+        return cache.get(contractId);
+    }
+
+    @Override
+    public CompletableFuture<EthAddr> resolveContractAddressAsync(@NonNull final String contractId) {
+        return cache.getAsync(contractId);
+    }
+
+    @Override
+    public void close() {
+        retryScheduler.shutdownNow();
+        resolutionExecutor.shutdownNow();
+        // The expired names are removed from the snapshot, so not preloaded at the next start
+        cache.cleanUp();
+    }
+
+    private CompletableFuture<EthAddr> resolve(final String contractId) {
+        val failure = failures.getIfPresent(contractId);
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+
+        val result = new CompletableFuture<EthAddr>();
+        attempt(contractId, 1, result);
+        return result;
+    }
+
+    private void attempt(final String contractId, final int attempt, final CompletableFuture<EthAddr> result) {
+        try {
+            resolutionExecutor.execute(() -> resolveAttempt(contractId, attempt, result));
+        } catch (RejectedExecutionException ex) {
+            // Too many pending resolutions or the service is closed
+            result.completeExceptionally(rejected(contractId, ex));
+        }
+    }
+
+    private void resolveAttempt(final String contractId, final int attempt, final CompletableFuture<EthAddr> result) {
+        try {
+            result.complete(new EthAddr(ensResolver.resolve(contractId)));
+        } catch (EnsResolutionException ex) {
+            log.warn("Attempt {} to resolve ENS ID {} failed", attempt, contractId);
+            if (attempt < MAX_ATTEMPTS) {
+                retry(contractId, attempt, result);
+            } else {
+                val failure = new VaspException(ex, "ENS resolution for the contract ID = %s failed", contractId);
+                failures.put(contractId, failure);
+                result.completeExceptionally(failure);
             }
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
         }
+    }
 
-        if (result != null) {
-            cache.putIfAbsent(contractId, result);
-            return result;
-        } else {
-            throw new VaspException(ensResolutionException, "ENS resolution for the contract ID = %s failed", contractId);
+    private void retry(final String contractId, final int failedAttempt, final CompletableFuture<EthAddr> result) {
+        try {
+            retryScheduler.schedule(
+                    () -> attempt(contractId, failedAttempt + 1, result),
+                    retryDelay(failedAttempt),
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(rejected(contractId, ex));
         }
     }
 
+    private static VaspException rejected(final String contractId, final RejectedExecutionException ex) {
+        return new VaspException(ex, "ENS resolution for the contract ID = %s is rejected", contractId);
+    }
+
+    /**
+     * Exponential backoff with the random half of the delay,
+     * so the retries of the concurrent resolutions do not hit the node at the same time
+     */
+    private static long retryDelay(final int attempt) {
+        val delay = FIRST_RETRY_DELAY_MS << (attempt - 1);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
 }
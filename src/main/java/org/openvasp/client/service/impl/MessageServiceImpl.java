@@ -1,12 +1,12 @@
 package org.openvasp.client.service.impl;
 
+import com.google.common.base.Suppliers;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.openvasp.client.api.whisper.model.ShhMessage;
 import org.openvasp.client.common.ExceptionHandler;
 import org.openvasp.client.common.Json;
-import org.openvasp.client.common.VaspValidationException;
 import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.model.EncryptionType;
 import org.openvasp.client.model.Topic;
@@ -15,7 +15,13 @@ import org.openvasp.client.service.*;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * @author Olexandr_Bilovol@epam.com
@@ -24,11 +30,18 @@ import java.util.Optional;
 @Slf4j
 public final class MessageServiceImpl implements MessageService {
 
+    // Whisper re-delivers an envelope until its TTL expires
+    private static final long DEDUP_WINDOW = TimeUnit.SECONDS.toMillis(WhisperServiceImpl.TTL.longValue());
+    private static final int DEDUP_MAX_SIZE = 100_000;
+
     private final WhisperService whisperService;
     private final SignService signService;
     private final ConfirmationService confirmationService;
     private final ExceptionHandler exceptionHandler;
-    private final String senderSigningPrivateKey;
+    // The signing key is parsed once, on the first outgoing message
+    private final Supplier<SignService.PayloadSigner> payloadSigner;
+    private final DuplicateFilter envelopeHashes = new DuplicateFilter(DEDUP_WINDOW, DEDUP_MAX_SIZE);
+    private final DuplicateFilter messageIds = new DuplicateFilter(DEDUP_WINDOW, DEDUP_MAX_SIZE);
 
     @Inject
     public MessageServiceImpl(
@@ -42,7 +55,8 @@ public final class MessageServiceImpl implements MessageService {
         this.signService = signService;
         this.confirmationService = confirmationService;
 
-        this.senderSigningPrivateKey = vaspConfig.getSigningPrivateKey();
+        val senderSigningPrivateKey = vaspConfig.getSigningPrivateKey();
+        this.payloadSigner = Suppliers.memoize(() -> signService.prepareSigner(senderSigningPrivateKey));
         this.exceptionHandler = exceptionHandler;
     }
 
@@ -54,8 +68,39 @@ public final class MessageServiceImpl implements MessageService {
             @NonNull final VaspMessage message) {
 
         log.debug("SEND: {}", Json.toJson(message));
-        confirmationService.registerForConfirmation(message);
-        whisperService.send(topic, encType, key, signService.makeSignedPayload(message, senderSigningPrivateKey));
+        val payload = payloadSigner.get().makeSignedPayload(message);
+        confirmationService.registerForConfirmation(message, () -> retransmit(topic, encType, key, message, payload));
+        whisperService.send(topic, encType, key, payload);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(
+            @NonNull final Topic topic,
+            @NonNull final EncryptionType encType,
+            @NonNull final String key,
+            @NonNull final VaspMessage message) {
+
+        log.debug("SEND ASYNC: {}", Json.toJson(message));
+        val payload = payloadSigner.get().makeSignedPayload(message);
+        confirmationService.registerForConfirmation(message, () -> retransmit(topic, encType, key, message, payload));
+        return whisperService.sendAsync(topic, encType, key, payload);
+    }
+
+    // The same signed payload is sent again, so the receiver acknowledges it again,
+    // but does not dispatch it if the original has come after all
+    private void retransmit(
+            final Topic topic,
+            final EncryptionType encType,
+            final String key,
+            final VaspMessage message,
+            final String payload) {
+
+        log.debug("RETRANSMIT: {}", messageId(message));
+        whisperService.sendAsync(topic, encType, key, payload).whenComplete((result, ex) -> {
+            if (ex != null) {
+                log.warn("Retransmission of the message " + messageId(message) + " failed", ex);
+            }
+        });
     }
 
     @Override
@@ -69,7 +114,7 @@ public final class MessageServiceImpl implements MessageService {
                 topic,
                 encType,
                 key,
-                listener.map(this::transformWhisperToVaspMessage));
+                listener.mapAll(this::transformWhisperToVaspMessages));
     }
 
     @Override
@@ -80,16 +125,56 @@ public final class MessageServiceImpl implements MessageService {
         whisperService.removeTopicListener(topic, listenerId);
     }
 
-    private Optional<VaspMessage> transformWhisperToVaspMessage(@NonNull final ShhMessage whisperMessage) {
-        try {
-            val vaspMessage = signService.extractSignedMessage(whisperMessage.getPayload());
-            confirmationService.confirmReceipt(vaspMessage);
-            return Optional.of(vaspMessage);
-        } catch (VaspValidationException ex) {
-            log.error("Error of processing an incoming message at the topic " + whisperMessage.getTopic(), ex);
-            exceptionHandler.processException(ex);
-            return Optional.empty();
+    private List<Optional<VaspMessage>> transformWhisperToVaspMessages(@NonNull final List<ShhMessage> whisperMessages) {
+        final List<Optional<VaspMessage>> result = new ArrayList<>(Collections.nCopies(whisperMessages.size(), Optional.empty()));
+
+        // The same envelope is dropped before decoding, an invalid one would be invalid again
+        val indexes = new ArrayList<Integer>();
+        val payloads = new ArrayList<String>();
+        for (int i = 0; i < whisperMessages.size(); i++) {
+            val envelopeHash = whisperMessages.get(i).getHash();
+            if (envelopeHash != null && !envelopeHashes.add(envelopeHash)) {
+                log.debug("Drop the re-delivered Whisper envelope {}", envelopeHash);
+            } else {
+                indexes.add(i);
+                payloads.add(whisperMessages.get(i).getPayload());
+            }
         }
+
+        // The messages are verified in parallel. The same message in another envelope, i.e. a retransmission,
+        // is verified too, since it has to be acknowledged again, in case the first acknowledgment is lost.
+        val extractedMessages = signService.extractSignedMessages(payloads);
+
+        for (int i = 0; i < extractedMessages.size(); i++) {
+            val index = indexes.get(i);
+            val topic = whisperMessages.get(index).getTopic();
+            val extracted = extractedMessages.get(i);
+
+            if (extracted.getError().isPresent()) {
+                val ex = extracted.getError().get();
+                log.error("Error of processing an incoming message at the topic " + topic, ex);
+                exceptionHandler.processException(ex);
+                continue;
+            }
+
+            // Only the verified message IDs are remembered, so a forged message cannot block the genuine one.
+            // The same message might have come twice with the same batch as well.
+            val vaspMessage = extracted.getMessage();
+            confirmationService.confirmReceipt(vaspMessage.get());
+            if (!messageIds.add(messageId(vaspMessage.get()))) {
+                log.debug("Drop the duplicate message at the topic {}, its receipt is confirmed again", topic);
+                continue;
+            }
+
+            result.set(index, vaspMessage);
+        }
+
+        return result;
+    }
+
+    private static String messageId(@NonNull final VaspMessage message) {
+        // The message ID is validated to be not null when the message is extracted
+        return message.getHeader().getMessageId();
     }
 
 }
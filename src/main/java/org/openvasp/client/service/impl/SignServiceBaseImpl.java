@@ -1,18 +1,24 @@
 package org.openvasp.client.service.impl;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
-import org.apache.commons.lang3.StringUtils;
-import org.openvasp.client.common.Json;
+import org.openvasp.client.common.PayloadCodec;
 import org.openvasp.client.common.VaspValidationException;
 import org.openvasp.client.model.VaspMessage;
 import org.openvasp.client.service.ContractService;
 import org.openvasp.client.service.SignService;
 import org.openvasp.client.service.VaspIdentityService;
 
-import static org.openvasp.client.common.VaspUtils.hexStrDecode;
-import static org.openvasp.client.common.VaspUtils.hexStrEncode;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
 
 /**
  * @author Olexandr_Bilovol@epam.com
@@ -23,31 +29,59 @@ abstract class SignServiceBaseImpl implements SignService {
     private final ContractService contractService;
     private final VaspIdentityService vaspIdentityService;
 
+    // The verification may block on loading the sender's contract, so there are more threads than cores
+    private static final int VERIFICATION_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+    private static final int VERIFICATION_QUEUE_SIZE = 1000;
+    private static final long VERIFICATION_KEEP_ALIVE_MS = 60_000;
+
+    private final ThreadPoolExecutor verificationExecutor;
+
     SignServiceBaseImpl(
             final ContractService contractService,
             final VaspIdentityService vaspIdentityService) {
 
         this.contractService = contractService;
         this.vaspIdentityService = vaspIdentityService;
+
+        // When the queue is full the receiving thread verifies the message itself
+        this.verificationExecutor = new ThreadPoolExecutor(
+                VERIFICATION_THREADS, VERIFICATION_THREADS,
+                VERIFICATION_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(VERIFICATION_QUEUE_SIZE),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("SignVerification-%d")
+                        .setDaemon(true)
+                        .build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        verificationExecutor.allowCoreThreadTimeOut(true);
     }
 
     @Override
-    public String makeSignedPayload(@NonNull final VaspMessage message, @NonNull final String privateKey) {
-        val encodedJson = hexStrEncode(Json.toJson(message), true);
-        val signature = signPayload(encodedJson, privateKey);
-        return encodedJson + signature;
+    public void close() {
+        verificationExecutor.shutdownNow();
     }
 
     @Override
-    public VaspMessage extractSignedMessage(@NonNull final String whisperPayload) {
-        val payload = StringUtils.left(whisperPayload, whisperPayload.length() - signatureLength());
-
-        val json = hexStrDecode(payload);
-        log.debug("RECEIVE: {}", json);
+    public String makeSignedPayload(@NonNull final VaspMessage message, @NonNull final String privateKey) {
+        return prepareSigner(privateKey).makeSignedPayload(message);
+    }
 
-        val signature = StringUtils.right(whisperPayload, signatureLength());
+    @Override
+    public PayloadSigner prepareSigner(@NonNull final String privateKey) {
+        val payloadSigner = preparePayloadSigner(privateKey);
+        return message -> PayloadCodec.encode(message, (payload, length) ->
+                new String(payload, 0, length, StandardCharsets.ISO_8859_1) + payloadSigner.sign(payload, length));
+    }
 
-        val message = VaspMessage.fromJson(json);
+    @Override
+    public VaspMessage extractSignedMessage(@NonNull final String whisperPayload) {
+        val payloadEnd = Math.max(whisperPayload.length() - signatureLength(), 0);
+        val message = PayloadCodec.decode(whisperPayload, payloadEnd, (json, offset, length) -> {
+            if (log.isDebugEnabled()) {
+                log.debug("RECEIVE: {}", new String(json, offset, length, StandardCharsets.UTF_8));
+            }
+            return VaspMessage.fromJson(json, offset, length);
+        });
         message.validate();
 
         val senderContractAddress = vaspIdentityService.resolveSenderVaspId(message)
@@ -56,6 +90,8 @@ abstract class SignServiceBaseImpl implements SignService {
         val senderContract = contractService.getVaspContractInfo(senderContractAddress);
         val publicSigningKey = senderContract.getSigningKey();
 
+        val payload = whisperPayload.substring(0, payloadEnd);
+        val signature = whisperPayload.substring(payloadEnd);
         if (!verifySign(payload, signature, publicSigningKey)) {
             throw new VaspValidationException(
                     message,
@@ -65,16 +101,38 @@ abstract class SignServiceBaseImpl implements SignService {
         return message;
     }
 
+    @Override
+    public List<ExtractedMessage> extractSignedMessages(@NonNull final List<String> whisperPayloads) {
+        if (whisperPayloads.size() < 2) {
+            return whisperPayloads.stream().map(this::tryExtractSignedMessage).collect(toList());
+        }
+
+        // The results are joined in the order of the payloads
+        val results = whisperPayloads.stream()
+                .map(payload -> CompletableFuture.supplyAsync(
+                        () -> tryExtractSignedMessage(payload),
+                        verificationExecutor))
+                .collect(toList());
+        return results.stream().map(CompletableFuture::join).collect(toList());
+    }
+
+    private ExtractedMessage tryExtractSignedMessage(final String whisperPayload) {
+        try {
+            return ExtractedMessage.of(extractSignedMessage(whisperPayload));
+        } catch (RuntimeException ex) {
+            return ExtractedMessage.failed(ex);
+        }
+    }
+
     abstract int signatureLength();
 
     /**
-     * Sign the message with given private key
+     * Prepare the signing of the messages with given private key
      *
-     * @param payload    a hex-encoded message
      * @param privateKey a hex-encoded private key
-     * @return hex-encoded signature
+     * @return thread-safe signer of the hex-encoded messages
      */
-    abstract String signPayload(String payload, String privateKey);
+    abstract HexPayloadSigner preparePayloadSigner(String privateKey);
 
     /**
      * Verify whether the provided signature for the given message is valid
@@ -86,4 +144,16 @@ abstract class SignServiceBaseImpl implements SignService {
      */
     abstract boolean verifySign(String payload, String sign, String pubKey);
 
+    @FunctionalInterface
+    interface HexPayloadSigner {
+
+        /**
+         * @param payload the ASCII bytes of a hex-encoded message
+         * @param length  the length of the message in the array
+         * @return hex-encoded signature
+         */
+        String sign(byte[] payload, int length);
+
+    }
+
 }
@@ -1,7 +1,12 @@
 package org.openvasp.client.service.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.bouncycastle.jcajce.provider.digest.Keccak;
 import org.bouncycastle.util.encoders.Hex;
+import org.openvasp.client.crypto.PreparedSigner;
 import org.openvasp.client.service.ContractService;
 import org.openvasp.client.service.VaspIdentityService;
 import org.web3j.crypto.*;
@@ -22,6 +27,14 @@ import static org.openvasp.client.common.Constants.SIGNATURE_LENGTH;
 @Singleton
 public final class SignServiceImpl extends SignServiceBaseImpl {
 
+    private static final String MESSAGE_PREFIX = "\u0019Ethereum Signed Message:\n";
+    private static final int SIGNER_ADDRESS_CACHE_SIZE = 1000;
+
+    // The signing keys come from the VASP contracts, so the same few keys are used again and again
+    private final LoadingCache<String, String> signerAddresses = CacheBuilder.newBuilder()
+            .maximumSize(SIGNER_ADDRESS_CACHE_SIZE)
+            .build(CacheLoader.from(SignServiceImpl::signerAddress));
+
     @Inject
     public SignServiceImpl(
             final ContractService contractService,
@@ -42,15 +55,21 @@ public final class SignServiceImpl extends SignServiceBaseImpl {
      * @param privateKey a hex-encoded private key
      * @return hex-encoded signature
      */
-    @Override
     @VisibleForTesting
     String signPayload(String payload, String privateKey) {
-        privateKey = Numeric.cleanHexPrefix(privateKey);
-        ECKeyPair keyPair = ECKeyPair.create(Hex.decode(privateKey));
-        Sign.SignatureData signature = Sign.signPrefixedMessage(payload.getBytes(StandardCharsets.UTF_8), keyPair);
-        String paddedR = Numeric.toHexStringNoPrefixZeroPadded(new BigInteger(1, signature.getR()), 64);
-        String paddedS = Numeric.toHexStringNoPrefixZeroPadded(new BigInteger(1, signature.getS()), 64);
-        return paddedR + paddedS + Hex.toHexString(signature.getV());
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return preparePayloadSigner(privateKey).sign(payloadBytes, payloadBytes.length);
+    }
+
+    @Override
+    HexPayloadSigner preparePayloadSigner(String privateKey) {
+        PreparedSigner signer = PreparedSigner.importPrivateKey(privateKey);
+        return (payload, length) -> {
+            Sign.SignatureData signature = signer.signHash(prefixedMessageHash(payload, length));
+            String paddedR = Numeric.toHexStringNoPrefixZeroPadded(new BigInteger(1, signature.getR()), 64);
+            String paddedS = Numeric.toHexStringNoPrefixZeroPadded(new BigInteger(1, signature.getS()), 64);
+            return paddedR + paddedS + Hex.toHexString(signature.getV());
+        };
     }
 
     /**
@@ -64,46 +83,56 @@ public final class SignServiceImpl extends SignServiceBaseImpl {
     @Override
     @VisibleForTesting
     boolean verifySign(String payload, String sign, String pubKey) {
-        pubKey = Numeric.cleanHexPrefix(pubKey);
-        pubKey = pubKey.length() > 128 ? pubKey.substring(pubKey.length() - 128) : pubKey; // for compatibility with C# client
-        String expectedSignerAddress = Keys.getAddress(pubKey);
-        String MESSAGE_PREFIX = "\u0019Ethereum Signed Message:\n";
-        String prefix = MESSAGE_PREFIX + payload.length();
-        byte[] msgHash = Hash.sha3((prefix + payload).getBytes());
+        String expectedSignerAddress = signerAddresses.getUnchecked(pubKey);
+        byte[] msgHash = prefixedMessageHash(payload);
 
         byte[] signatureBytes = Numeric.hexStringToByteArray(sign);
-        byte v = signatureBytes[64];
+        int v = signatureBytes[64] & 0xFF;
         if (v < 27) {
             v += 27;
         }
 
-        Sign.SignatureData sd =
-                new Sign.SignatureData(
-                        v,
-                        (byte[]) Arrays.copyOfRange(signatureBytes, 0, 32),
-                        (byte[]) Arrays.copyOfRange(signatureBytes, 32, 64));
+        ECDSASignature signature = new ECDSASignature(
+                new BigInteger(1, Arrays.copyOfRange(signatureBytes, 0, 32)),
+                new BigInteger(1, Arrays.copyOfRange(signatureBytes, 32, 64)));
 
-        String addressRecovered = null;
-        boolean match = false;
+        // 'v' identifies the key to recover, so a single recovery is enough
+        int recId = v - 27;
+        if (recId < 4) {
+            return expectedSignerAddress.equals(recoverSignerAddress(recId, signature, msgHash));
+        }
 
-        // Iterate for each possible key to recover
+        // Malformed 'v', so iterate for each possible key to recover
         for (int i = 0; i < 4; i++) {
-            BigInteger publicKey =
-                    Sign.recoverFromSignature(
-                            (byte) i,
-                            new ECDSASignature(
-                                    new BigInteger(1, sd.getR()), new BigInteger(1, sd.getS())),
-                            msgHash);
-
-            if (publicKey != null) {
-                addressRecovered = Keys.getAddress(publicKey);
-                if (addressRecovered.equals(expectedSignerAddress)) {
-                    match = true;
-                    break;
-                }
+            if (expectedSignerAddress.equals(recoverSignerAddress(i, signature, msgHash))) {
+                return true;
             }
         }
-        return match;
+        return false;
+    }
+
+    private static byte[] prefixedMessageHash(String payload) {
+        String prefix = MESSAGE_PREFIX + payload.length();
+        return Hash.sha3((prefix + payload).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The payload is ASCII, so its length in bytes is the same as in chars
+    private static byte[] prefixedMessageHash(byte[] payload, int length) {
+        Keccak.Digest256 digest = new Keccak.Digest256();
+        digest.update((MESSAGE_PREFIX + length).getBytes(StandardCharsets.UTF_8));
+        digest.update(payload, 0, length);
+        return digest.digest();
+    }
+
+    private static String recoverSignerAddress(int recId, ECDSASignature signature, byte[] msgHash) {
+        BigInteger publicKey = Sign.recoverFromSignature(recId, signature, msgHash);
+        return publicKey != null ? Keys.getAddress(publicKey) : null;
+    }
+
+    private static String signerAddress(String pubKey) {
+        pubKey = Numeric.cleanHexPrefix(pubKey);
+        pubKey = pubKey.length() > 128 ? pubKey.substring(pubKey.length() - 128) : pubKey; // for compatibility with C# client
+        return Keys.getAddress(pubKey);
     }
 
 }
@@ -0,0 +1,146 @@
+package org.openvasp.client.service.impl;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.openvasp.client.api.whisper.WhisperApiError;
+import org.openvasp.client.api.whisper.WhisperSymKeyApi;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Maps symmetric keys (shared secrets) to the key IDs registered at the Whisper node,
+ * so that every key is added to the node once instead of once per outgoing message.
+ * <p>
+ * The entries referenced by message filters (i.e. by sessions) are kept until released,
+ * the unreferenced ones are evicted in LRU order with shh_deleteSymKey
+ * when the cache grows over its limit.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@Slf4j
+final class SymKeyCache {
+
+    // The error of the Whisper node when the key ID is unknown to it
+    private static final String UNKNOWN_KEY_ERROR = "non-existent key ID";
+
+    private final WhisperSymKeyApi whisper;
+    private final int maxSize;
+
+    // Access order makes the first unreferenced entry the least recently used one
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    SymKeyCache(@NonNull final WhisperSymKeyApi whisper, final int maxSize) {
+        checkArgument(maxSize > 0, "maxSize must be positive");
+        this.whisper = whisper;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the key ID and keep it registered until {@link #release} is called.
+     */
+    synchronized String acquire(@NonNull final String key) {
+        val entry = getOrRegister(key);
+        entry.refCount++;
+        return entry.keyId;
+    }
+
+    synchronized void release(@NonNull final String key) {
+        val entry = entries.get(key);
+        if (entry != null && entry.refCount > 0) {
+            entry.refCount--;
+            evictUnreferenced(maxSize);
+        }
+    }
+
+    /**
+     * Get the key ID without holding a reference to it.
+     */
+    synchronized String get(@NonNull final String key) {
+        return getOrRegister(key).keyId;
+    }
+
+    /**
+     * @return true if the error means the key ID is unknown to the node, so the key has to be registered again
+     */
+    static boolean isUnknownKeyError(final Throwable error) {
+        return error instanceof WhisperApiError
+                && error.getMessage() != null
+                && error.getMessage().contains(UNKNOWN_KEY_ERROR);
+    }
+
+    /**
+     * Register the key at the node once again, e.g. after the node has been restarted
+     * and forgot its keys. The references to the key stay valid, the stale key ID is deleted.
+     *
+     * @param staleKeyId the key ID rejected by the node
+     * @return the new key ID
+     */
+    synchronized String reRegister(@NonNull final String key, final String staleKeyId) {
+        val entry = entries.get(key);
+        if (entry == null) {
+            return get(key);
+        }
+
+        // Another thread might have already re-registered the key
+        if (entry.keyId == null || entry.keyId.equals(staleKeyId)) {
+            log.debug("Re-register the symmetric key {} at the Whisper node", staleKeyId);
+            entry.keyId = whisper.addSymKey(key);
+            deleteSymKey(staleKeyId);
+        }
+        return entry.keyId;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private Entry getOrRegister(final String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            evictUnreferenced(maxSize - 1);
+            entry = new Entry(whisper.addSymKey(key));
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private void evictUnreferenced(final int limit) {
+        for (Iterator<Entry> it = entries.values().iterator(); entries.size() > limit && it.hasNext(); ) {
+            val entry = it.next();
+            if (entry.refCount == 0) {
+                it.remove();
+                deleteSymKey(entry.keyId);
+            }
+        }
+    }
+
+    private void deleteSymKey(final String keyId) {
+        if (keyId == null) {
+            return;
+        }
+
+        try {
+            whisper.deleteSymKey(keyId);
+        } catch (RuntimeException ex) {
+            // The key will be lost by the node at restart anyway
+            log.warn("Cannot delete the symmetric key {} at the Whisper node", keyId, ex);
+        }
+    }
+
+    private static final class Entry {
+
+        String keyId;
+        int refCount;
+
+        Entry(final String keyId) {
+            this.keyId = keyId;
+        }
+
+    }
+
+}
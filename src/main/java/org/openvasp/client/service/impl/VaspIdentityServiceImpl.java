@@ -7,9 +7,9 @@ import org.openvasp.client.model.VaspMessage;
 import org.openvasp.client.service.VaspIdentityService;
 
 import javax.inject.Singleton;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 /**
@@ -18,7 +18,8 @@ import java.util.function.Function;
 @Singleton
 public final class VaspIdentityServiceImpl implements VaspIdentityService {
 
-    private final List<Function<VaspMessage, Optional<EthAddr>>> resolvers = new ArrayList<>();
+    // Resolved for every incoming message, while the resolvers are added rarely, so the resolution takes no lock
+    private final List<Function<VaspMessage, Optional<EthAddr>>> resolvers = new CopyOnWriteArrayList<>();
 
     @Override
     public Optional<EthAddr> resolveSenderVaspId(@NonNull final VaspMessage message) {
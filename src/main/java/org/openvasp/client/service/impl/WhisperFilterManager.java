@@ -0,0 +1,610 @@
+package org.openvasp.client.service.impl;
+
+import io.reactivex.disposables.Disposable;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.openvasp.client.api.whisper.WhisperApi;
+import org.openvasp.client.api.whisper.WhisperApiError;
+import org.openvasp.client.api.whisper.WhisperSubscriptionApi;
+import org.openvasp.client.api.whisper.model.ShhMessage;
+import org.openvasp.client.api.whisper.model.ShhNewMessageFilterRequest;
+import org.openvasp.client.common.ExceptionHandler;
+import org.openvasp.client.common.Tuple2;
+import org.openvasp.client.common.VaspException;
+import org.openvasp.client.model.EncryptionType;
+import org.openvasp.client.model.Topic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Keeps the Whisper message filters (or subscriptions) for the topics being listened to.
+ * <p>
+ * The topics sharing the same key, e.g. the VASP code topic and the confirmation topics
+ * under the handshake key, are merged into multi-topic filters of up to
+ * {@link #MAX_TOPICS_PER_FILTER} topics. So the node has to match and the client has to poll
+ * a few filters instead of one per topic. When a topic comes or goes only the filter
+ * containing it is rebuilt. The incoming messages have to be demultiplexed by the caller
+ * via {@link ShhMessage#getTopic()}.
+ * <p>
+ * The filter of a key declared by {@link #matchAllTopics} has no topics, so it matches every message
+ * encrypted with the key. Its topics are kept by the manager only, they come and go without a rebuild.
+ * It suits a private key, e.g. the handshake key, whose messages are all addressed to its holder,
+ * so the topics only demultiplex them.
+ * <p>
+ * Each polled filter has its own schedule. A new filter and a filter returning messages
+ * are polled every {@link #MIN_POLL_INTERVAL} ms, so the session topics are polled rapidly
+ * during a handshake. An idle filter, e.g. the VASP code topic one, backs off exponentially
+ * up to the max poll interval.
+ * <p>
+ * A filter with a saturated topic, i.e. one whose incoming messages are not dispatched fast enough,
+ * is not polled and its subscription is paused until the topic has room again, so the undelivered
+ * messages stay at the node meanwhile.
+ * <p>
+ * When the node rejects the key ID of a filter, e.g. because the node was restarted and lost its keys
+ * along with the filters, the key is added to the node again before the filter is re-created.
+ * <p>
+ * The class is not thread-safe except for the subscription callbacks,
+ * so the caller has to serialize the calls.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@Slf4j
+final class WhisperFilterManager implements AutoCloseable {
+
+    static final int MAX_TOPICS_PER_FILTER = 64;
+    static final long MIN_POLL_INTERVAL = 50;
+
+    // The error of the Whisper node when the private key ID is unknown to it
+    private static final String UNKNOWN_PRIVATE_KEY_ERROR = "invalid id";
+
+    private final WhisperApi whisper;
+    private final WhisperSubscriptionApi subscriptionApi;
+    private final SymKeyCache symKeyCache;
+    private final Consumer<ShhMessage> pushedMessageConsumer;
+    private final Predicate<Topic> saturatedTopics;
+    private final ExceptionHandler exceptionHandler;
+    private final long maxPollInterval;
+
+    private final Map<Tuple2<EncryptionType, String>, KeyGroup> keyGroups = new HashMap<>();
+    private final Set<Tuple2<EncryptionType, String>> allTopicsKeys = new HashSet<>();
+    private final Map<Topic, MessageFilter> topicFilters = new HashMap<>();
+    private final Map<String, MessageFilter> pollableFilters = new LinkedHashMap<>();
+
+    // Messages taken from the replaced filters, they are dispatched with the next poll
+    private final List<ShhMessage> pendingMessages = new ArrayList<>();
+
+    WhisperFilterManager(
+            @NonNull final WhisperApi whisper,
+            @NonNull final WhisperSubscriptionApi subscriptionApi,
+            @NonNull final SymKeyCache symKeyCache,
+            @NonNull final Consumer<ShhMessage> pushedMessageConsumer,
+            @NonNull final Predicate<Topic> saturatedTopics,
+            @NonNull final ExceptionHandler exceptionHandler,
+            final long maxPollInterval) {
+
+        checkArgument(maxPollInterval >= MIN_POLL_INTERVAL, "maxPollInterval must not be less than " + MIN_POLL_INTERVAL);
+
+        this.whisper = whisper;
+        this.subscriptionApi = subscriptionApi;
+        this.symKeyCache = symKeyCache;
+        this.pushedMessageConsumer = pushedMessageConsumer;
+        this.saturatedTopics = saturatedTopics;
+        this.exceptionHandler = exceptionHandler;
+        this.maxPollInterval = maxPollInterval;
+    }
+
+    /**
+     * Makes the filter of the key match all the topics, the topics of the key already added are not affected
+     */
+    synchronized void matchAllTopics(
+            @NonNull final EncryptionType encType,
+            @NonNull final String key) {
+
+        allTopicsKeys.add(Tuple2.of(encType, key));
+    }
+
+    synchronized void addTopic(
+            @NonNull final Topic topic,
+            @NonNull final EncryptionType encType,
+            @NonNull final String key) {
+
+        addTopics(Collections.singletonList(topic), encType, key);
+    }
+
+    /**
+     * Adds the topics sharing the key, each affected filter is rebuilt once.
+     * When a rebuild fails none of the topics is added.
+     */
+    synchronized void addTopics(
+            @NonNull final Collection<Topic> topics,
+            @NonNull final EncryptionType encType,
+            @NonNull final String key) {
+
+        val addedTopics = new LinkedHashMap<Topic, MessageFilter>();
+        val filtersToBuild = new LinkedHashSet<MessageFilter>();
+        for (val topic : topics) {
+            if (topicFilters.containsKey(topic)) {
+                continue;
+            }
+
+            val groupKey = Tuple2.of(encType, key);
+            KeyGroup group = keyGroups.get(groupKey);
+            if (group == null) {
+                group = new KeyGroup(encType, key, allTopicsKeys.contains(groupKey));
+                keyGroups.put(groupKey, group);
+            }
+
+            MessageFilter filter = null;
+            for (val item : group.filters) {
+                if (group.allTopics || item.topics.size() < MAX_TOPICS_PER_FILTER) {
+                    filter = item;
+                    break;
+                }
+            }
+            if (filter == null) {
+                filter = new MessageFilter(group);
+                group.filters.add(filter);
+            }
+
+            filter.topics.add(topic);
+            topicFilters.put(topic, filter);
+            addedTopics.put(topic, filter);
+            // The filter matching all the topics is built only when it is not at the node yet
+            if (!group.allTopics || !filter.isInstalled()) {
+                filtersToBuild.add(filter);
+            }
+        }
+
+        val rebuiltFilters = new ArrayList<MessageFilter>();
+        try {
+            for (val filter : filtersToBuild) {
+                filter.rebuild();
+                rebuiltFilters.add(filter);
+            }
+        } catch (RuntimeException ex) {
+            addedTopics.forEach((topic, filter) -> removeTopicFromFilter(topic, filter));
+            for (val filter : rebuiltFilters) {
+                if (!filter.topics.isEmpty()) {
+                    try {
+                        filter.rebuild();
+                    } catch (RuntimeException rollbackEx) {
+                        log.warn("Cannot roll back the Whisper message filter at the topics {}", filter.topics, rollbackEx);
+                    }
+                }
+            }
+            throw ex;
+        }
+    }
+
+    synchronized void removeTopic(@NonNull final Topic topic) {
+        removeTopics(Collections.singletonList(topic));
+    }
+
+    /**
+     * Removes the topics, each affected filter is rebuilt once
+     */
+    synchronized void removeTopics(@NonNull final Collection<Topic> topics) {
+        val affectedFilters = new LinkedHashSet<MessageFilter>();
+        for (val topic : topics) {
+            val filter = topicFilters.get(topic);
+            if (filter != null) {
+                removeTopicFromFilter(topic, filter);
+                affectedFilters.add(filter);
+            }
+        }
+
+        for (val filter : affectedFilters) {
+            // The empty filters are released already, the filter matching all the topics is kept as is
+            if (!filter.topics.isEmpty() && !filter.group.allTopics) {
+                filter.rebuild();
+            }
+        }
+    }
+
+    /**
+     * @return IDs of the filters, which have to be polled because their messages are not pushed
+     */
+    synchronized List<String> pollableFilterIds() {
+        return new ArrayList<>(pollableFilters.keySet());
+    }
+
+    /**
+     * @return IDs of the filters, which are due to be polled at the moment {@code now} and have no saturated topic
+     */
+    synchronized List<String> dueFilterIds(final long now) {
+        return pollableFilters.values()
+                .stream()
+                .filter(filter -> filter.nextPollTime <= now && !filter.isSaturated())
+                .map(filter -> filter.filterId)
+                .collect(toList());
+    }
+
+    /**
+     * Schedules the next poll of the filter: a filter returning messages stays hot,
+     * an idle one backs off.
+     */
+    synchronized void onFilterPolled(
+            @NonNull final String filterId,
+            final boolean hasMessages,
+            final long now) {
+
+        val filter = pollableFilters.get(filterId);
+        if (filter == null) {
+            return;
+        }
+
+        filter.pollInterval = hasMessages
+                ? MIN_POLL_INTERVAL
+                : Math.min(filter.pollInterval * 2, maxPollInterval);
+        filter.nextPollTime = now + filter.pollInterval;
+    }
+
+    /**
+     * Pauses the subscriptions with a saturated topic and resumes the paused ones, which have room again.
+     * A paused subscription is replaced with a filter, which is not polled while the topic is saturated.
+     */
+    synchronized void updateSubscriptions() {
+        for (val group : keyGroups.values()) {
+            for (val filter : group.filters) {
+                try {
+                    if (filter.subscription != null && filter.isSaturated()) {
+                        filter.pause();
+                    } else if (filter.paused && !filter.isSaturated()) {
+                        log.debug("Resume the Whisper subscription at the topics {}", filter.topics);
+                        filter.rebuild();
+                    }
+                } catch (RuntimeException ex) {
+                    log.error("Error of updating the Whisper subscription at the topics " + filter.topics, ex);
+                    exceptionHandler.processException(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-creates the filter the node does not know any more,
+     * e.g. because the node was restarted or the filter was not polled for a long time.
+     *
+     * @return false if the filter is not kept by the manager, e.g. because it was removed in the meantime
+     */
+    synchronized boolean recreateFilter(@NonNull final String filterId) {
+        val filter = pollableFilters.get(filterId);
+        if (filter == null) {
+            return false;
+        }
+
+        log.warn("Re-create the lost Whisper message filter {} at the topics {}", filterId, filter.topics);
+        filter.rebuild();
+        return true;
+    }
+
+    /**
+     * @return delay in milliseconds till the next poll is due, the saturated filters are checked
+     * again after the max poll interval at the latest
+     */
+    synchronized long nextPollDelay(final long now) {
+        if (!pendingMessages.isEmpty()) {
+            return 0;
+        }
+
+        long result = maxPollInterval;
+        for (val filter : pollableFilters.values()) {
+            if (!filter.isSaturated()) {
+                result = Math.min(result, filter.nextPollTime - now);
+            }
+        }
+        return Math.max(result, 0);
+    }
+
+    synchronized List<ShhMessage> drainPendingMessages() {
+        if (pendingMessages.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        val result = new ArrayList<ShhMessage>(pendingMessages);
+        pendingMessages.clear();
+        return result;
+    }
+
+    synchronized int filterCount() {
+        return keyGroups.values().stream().mapToInt(group -> group.filters.size()).sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        for (val group : keyGroups.values()) {
+            for (val filter : group.filters) {
+                filter.release(filter.filterId, filter.subscription, false);
+            }
+            group.close();
+        }
+        keyGroups.clear();
+        topicFilters.clear();
+        pollableFilters.clear();
+        pendingMessages.clear();
+    }
+
+    /**
+     * Removes the topic without rebuilding the filter, the caller has to rebuild it if it is not empty
+     */
+    private void removeTopicFromFilter(final Topic topic, final MessageFilter filter) {
+
+        val group = filter.group;
+        topicFilters.remove(topic);
+        filter.topics.remove(topic);
+
+        if (filter.topics.isEmpty()) {
+            filter.release(filter.filterId, filter.subscription, false);
+            filter.setFilterId(null);
+            group.filters.remove(filter);
+        }
+
+        if (group.filters.isEmpty()) {
+            group.close();
+            keyGroups.remove(Tuple2.of(group.encType, group.key));
+        }
+    }
+
+    private void onSubscriptionError(
+            final MessageFilter filter,
+            final long generation,
+            final Throwable error) {
+
+        synchronized (this) {
+            // The filter might have been rebuilt or removed since the subscription was created
+            if (filter.generation != generation || filter.subscription == null) {
+                return;
+            }
+
+            log.warn("Whisper subscription at the topics {} failed, falling back to polling", filter.topics, error);
+            filter.subscription = null;
+            try {
+                filter.setFilterId(filter.newMessageFilter());
+            } catch (RuntimeException ex) {
+                log.error("Error of creating a Whisper message filter at the topics " + filter.topics, ex);
+                exceptionHandler.processException(ex);
+            }
+        }
+    }
+
+    private final class KeyGroup {
+
+        final EncryptionType encType;
+        final String key;
+        final boolean allTopics;
+        String keyId;
+        final List<MessageFilter> filters = new ArrayList<>();
+
+        KeyGroup(final EncryptionType encType, final String key, final boolean allTopics) {
+            this.encType = encType;
+            this.key = key;
+            this.allTopics = allTopics;
+
+            switch (encType) {
+                case ASSYMETRIC:
+                    this.keyId = whisper.addPrivateKey(key);
+                    break;
+
+                case SYMMETRIC:
+                    this.keyId = symKeyCache.acquire(key);
+                    break;
+
+                default:
+                    // encType cannot be null, so it is impossible to get there
+                    // But because the Java compiler does not know that, it requires
+                    // initialization of final 'keyId'.
+                    // The exception is just a workaround for the situation
+                    throw new VaspException("It's impossible to get here");
+            }
+        }
+
+        /**
+         * @return true if the error means the key ID is unknown to the node
+         */
+        boolean isUnknownKeyError(final RuntimeException error) {
+            switch (encType) {
+                case ASSYMETRIC:
+                    return error instanceof WhisperApiError
+                            && error.getMessage() != null
+                            && error.getMessage().contains(UNKNOWN_PRIVATE_KEY_ERROR);
+
+                case SYMMETRIC:
+                    return SymKeyCache.isUnknownKeyError(error);
+
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Add the key to the node once again, the stale key ID is unknown to the node, so it is not deleted
+         */
+        void reAddKey() {
+            log.warn("Re-add the key {} of the Whisper message filters at the topics {}",
+                    keyId, filters.stream().flatMap(filter -> filter.topics.stream()).collect(toList()));
+
+            switch (encType) {
+                case ASSYMETRIC:
+                    keyId = whisper.addPrivateKey(key);
+                    break;
+
+                case SYMMETRIC:
+                    keyId = symKeyCache.reRegister(key, keyId);
+                    break;
+            }
+        }
+
+        void close() {
+            switch (encType) {
+                case ASSYMETRIC:
+                    if (keyId != null) {
+                        whisper.deleteKeyPair(keyId);
+                    }
+                    break;
+
+                case SYMMETRIC:
+                    // The key ID is shared with other filters and outgoing messages
+                    symKeyCache.release(key);
+                    break;
+            }
+        }
+
+    }
+
+    private final class MessageFilter {
+
+        final KeyGroup group;
+        final Set<Topic> topics = new LinkedHashSet<>();
+        String filterId;
+        Disposable subscription;
+        // The subscription is replaced with a filter, which is not polled while saturated
+        boolean paused;
+        long generation;
+        long pollInterval;
+        long nextPollTime;
+
+        MessageFilter(final KeyGroup group) {
+            this.group = group;
+        }
+
+        boolean isSaturated() {
+            return topics.stream().anyMatch(saturatedTopics);
+        }
+
+        boolean isInstalled() {
+            return filterId != null || subscription != null;
+        }
+
+        ShhNewMessageFilterRequest newFilterRequest() {
+            val builder = ShhNewMessageFilterRequest.builder();
+            if (!group.allTopics) {
+                builder.topics(topics.stream().map(Topic::getData).collect(toList()));
+            }
+
+            switch (group.encType) {
+                case ASSYMETRIC:
+                    builder.privateKeyId(group.keyId);
+                    break;
+
+                case SYMMETRIC:
+                    builder.symKeyId(group.keyId);
+                    break;
+            }
+
+            return builder.build();
+        }
+
+        /**
+         * Create the filter at the node, re-adding the key if the node does not know it
+         */
+        String newMessageFilter() {
+            try {
+                return whisper.newMessageFilter(newFilterRequest());
+            } catch (RuntimeException ex) {
+                if (!group.isUnknownKeyError(ex)) {
+                    throw ex;
+                }
+                group.reAddKey();
+                return whisper.newMessageFilter(newFilterRequest());
+            }
+        }
+
+        void rebuild() {
+            val oldFilterId = filterId;
+            val oldSubscription = subscription;
+            val currentGeneration = ++generation;
+
+            // Create the new filter before releasing the old one, so no message is lost in between
+            Disposable newSubscription = null;
+            subscription = null;
+            try {
+                if (subscriptionApi.isSubscriptionAvailable()) {
+                    newSubscription = subscriptionApi
+                            .subscribeMessages(newFilterRequest())
+                            .subscribe(
+                                    pushedMessageConsumer::accept,
+                                    error -> onSubscriptionError(this, currentGeneration, error));
+                }
+
+                // The subscription might have failed immediately, e.g. because of the closed socket
+                if (newSubscription == null || newSubscription.isDisposed()) {
+                    setFilterId(newMessageFilter());
+                } else {
+                    setFilterId(null);
+                    subscription = newSubscription;
+                }
+            } catch (RuntimeException ex) {
+                subscription = oldSubscription;
+                throw ex;
+            }
+
+            paused = false;
+            release(oldFilterId, oldSubscription, true);
+        }
+
+        void pause() {
+            log.debug("Pause the Whisper subscription at the topics {}", topics);
+
+            // Create the filter before disposing the subscription, so no message is lost in between
+            setFilterId(newMessageFilter());
+            val oldSubscription = subscription;
+            subscription = null;
+            paused = true;
+            ++generation;
+            release(null, oldSubscription, false);
+        }
+
+        void setFilterId(final String newFilterId) {
+            if (filterId != null) {
+                pollableFilters.remove(filterId);
+            }
+
+            filterId = newFilterId;
+            if (newFilterId != null) {
+                // A new filter is hot, it's likely to get messages soon
+                pollInterval = MIN_POLL_INTERVAL;
+                nextPollTime = 0;
+                pollableFilters.put(newFilterId, this);
+            }
+        }
+
+        void release(
+                final String oldFilterId,
+                final Disposable oldSubscription,
+                final boolean drain) {
+
+            if (oldSubscription != null) {
+                oldSubscription.dispose();
+            }
+
+            if (oldFilterId != null) {
+                try {
+                    if (drain) {
+                        pendingMessages.addAll(whisper.getFilterMessages(oldFilterId));
+                    }
+                    whisper.deleteMessageFilter(oldFilterId);
+                } catch (RuntimeException ex) {
+                    // The node deletes the filters which are not polled for a while anyway
+                    log.warn("Cannot release the Whisper message filter {}", oldFilterId, ex);
+                }
+            }
+        }
+
+    }
+
+}
@@ -1,17 +1,19 @@
 package org.openvasp.client.service.impl;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.openvasp.client.api.whisper.WhisperApi;
+import org.openvasp.client.api.whisper.WhisperApiError;
+import org.openvasp.client.api.whisper.WhisperAsyncApi;
 import org.openvasp.client.api.whisper.WhisperIOException;
+import org.openvasp.client.api.whisper.WhisperSubscriptionApi;
 import org.openvasp.client.api.whisper.model.ShhMessage;
-import org.openvasp.client.api.whisper.model.ShhNewMessageFilterRequest;
 import org.openvasp.client.api.whisper.model.ShhPostRequest;
 import org.openvasp.client.common.ExceptionHandler;
-import org.openvasp.client.common.Tuple2;
 import org.openvasp.client.common.VaspException;
 import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.model.EncryptionType;
@@ -25,20 +27,35 @@ import javax.inject.Singleton;
 import java.io.InterruptedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Stream;
+import java.util.function.Function;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.stream.Collectors.toList;
 
 /**
@@ -48,22 +65,38 @@ import static java.util.stream.Collectors.toList;
 @Slf4j
 public final class WhisperServiceImpl implements WhisperService {
 
-    private static final BigInteger TTL = BigInteger.valueOf(60);
+    static final BigInteger TTL = BigInteger.valueOf(60);
     private static final BigInteger POW_TIME = BigInteger.valueOf(20);
     private static final BigDecimal POW_TARGET = BigDecimal.valueOf(2.01);
 
-    private static final long POLL_TIMEOUT = 1000;
+    private static final long DEFAULT_POLL_MAX_INTERVAL = 1000;
+    private static final int DEFAULT_POLL_BATCH_SIZE = 100;
+    private static final int DEFAULT_POLL_THREADS = 4;
+    private static final int DEFAULT_DISPATCH_THREADS = 4;
+    private static final int DEFAULT_DISPATCH_QUEUE_SIZE = 1000;
+    private static final int DISPATCH_BATCH_SIZE = 100;
+    private static final int SYM_KEY_CACHE_SIZE = 1000;
 
     private static final int RUNNING = 1;
     private static final int SHUTDOWN = 2;
     private static final int TERMINATED = 3;
 
     private final WhisperApi whisper;
+    private final WhisperAsyncApi whisperAsync;
+    private final SymKeyCache symKeyCache;
+    private final WhisperFilterManager filterManager;
 
+    private final int pollBatchSize;
     private final Thread pollingThread;
+    private final ExecutorService pollExecutor;
+    private final ExecutorService dispatchExecutor;
+    private final int dispatchQueueSize;
     private final AtomicInteger state = new AtomicInteger(RUNNING);
     private final ReentrantLock stateCtl = new ReentrantLock();
     private final Condition termination = stateCtl.newCondition();
+    private final ReentrantLock pollCtl = new ReentrantLock();
+    private final Condition pollWakeup = pollCtl.newCondition();
+    private boolean pollRequested;
 
     private final ConcurrentMap<Topic, TopicListenerRecord> listenerRecords = new ConcurrentHashMap<>();
     private final Lock listenerRecordsLock = new ReentrantLock();
@@ -74,10 +107,54 @@ public final class WhisperServiceImpl implements WhisperService {
     public WhisperServiceImpl(
             final VaspConfig vaspConfig,
             final ExceptionHandler exceptionHandler,
-            final WhisperApi whisper) {
+            final WhisperApi whisper,
+            final WhisperAsyncApi whisperAsync,
+            final WhisperSubscriptionApi subscriptionApi) {
 
         this.exceptionHandler = exceptionHandler;
         this.whisper = whisper;
+        this.whisperAsync = whisperAsync;
+        this.symKeyCache = new SymKeyCache(whisper, SYM_KEY_CACHE_SIZE);
+        this.pollBatchSize = Optional
+                .ofNullable(vaspConfig.getWhisperPollBatchSize())
+                .orElse(DEFAULT_POLL_BATCH_SIZE);
+        checkArgument(pollBatchSize > 0, "whisperPollBatchSize must be positive");
+        val pollMaxInterval = Optional
+                .ofNullable(vaspConfig.getWhisperPollMaxInterval())
+                .orElse(DEFAULT_POLL_MAX_INTERVAL);
+        this.filterManager = new WhisperFilterManager(
+                whisper,
+                subscriptionApi,
+                symKeyCache,
+                this::processIncomingMassage,
+                this::isSaturated,
+                exceptionHandler,
+                pollMaxInterval);
+        // The messages encrypted with the handshake key are all addressed to this VASP, the topics only
+        // demultiplex them, so the short-lived confirmation topics come and go without updating the filter
+        if (vaspConfig.getHandshakePrivateKey() != null) {
+            filterManager.matchAllTopics(EncryptionType.ASSYMETRIC, vaspConfig.getHandshakePrivateKey());
+        }
+        val pollThreads = Optional
+                .ofNullable(vaspConfig.getWhisperPollThreads())
+                .orElse(DEFAULT_POLL_THREADS);
+        checkArgument(pollThreads > 0, "whisperPollThreads must be positive");
+        this.pollExecutor = Executors.newFixedThreadPool(pollThreads, new ThreadFactoryBuilder()
+                .setNameFormat("TopicPolling-" + vaspConfig.getVaspInfo().getVaspCode() + "-%d")
+                .setDaemon(true)
+                .build());
+        val dispatchThreads = Optional
+                .ofNullable(vaspConfig.getWhisperDispatchThreads())
+                .orElse(DEFAULT_DISPATCH_THREADS);
+        checkArgument(dispatchThreads > 0, "whisperDispatchThreads must be positive");
+        this.dispatchQueueSize = Optional
+                .ofNullable(vaspConfig.getWhisperDispatchQueueSize())
+                .orElse(DEFAULT_DISPATCH_QUEUE_SIZE);
+        checkArgument(dispatchQueueSize > 0, "whisperDispatchQueueSize must be positive");
+        this.dispatchExecutor = Executors.newFixedThreadPool(dispatchThreads, new ThreadFactoryBuilder()
+                .setNameFormat("TopicDispatch-" + vaspConfig.getVaspInfo().getVaspCode() + "-%d")
+                .setDaemon(true)
+                .build());
         this.pollingThread = new Thread(
                 this::topicPollingLoop,
                 "TopicPollingLoop-" + vaspConfig.getVaspInfo().getVaspCode());
@@ -92,11 +169,13 @@ public final class WhisperServiceImpl implements WhisperService {
 
         listenerRecordsLock.lock();
         try {
-            listenerRecords.values().forEach(TopicListenerRecord::close);
+            filterManager.close();
             listenerRecords.clear();
         } finally {
             listenerRecordsLock.unlock();
         }
+
+        dispatchExecutor.shutdownNow();
     }
 
     public void shutdown() {
@@ -106,6 +185,7 @@ public final class WhisperServiceImpl implements WhisperService {
         } finally {
             stateCtl.unlock();
         }
+        wakeUpPolling();
     }
 
     public boolean waitForTermination(final long msTimeout) {
@@ -142,21 +222,87 @@ public final class WhisperServiceImpl implements WhisperService {
             }
 
             case SYMMETRIC: {
-                val symKeyId = whisper.addSymKey(key);
+                val symKeyId = symKeyCache.get(key);
+                try {
+                    whisper.post(newSymPostRequest(topic, symKeyId, payload));
+                } catch (WhisperApiError ex) {
+                    // The node might have been restarted and forgot the cached key ID,
+                    // the other errors would fail the same way again
+                    if (!SymKeyCache.isUnknownKeyError(ex)) {
+                        throw ex;
+                    }
+                    log.debug("Retry shh_post with the re-registered symmetric key: {}", ex.getMessage());
+                    whisper.post(newSymPostRequest(topic, symKeyCache.reRegister(key, symKeyId), payload));
+                }
+                break;
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(
+            @NonNull final Topic topic,
+            @NonNull final EncryptionType encType,
+            @NonNull final String key,
+            @NonNull final String payload) {
+
+        switch (encType) {
+            case ASSYMETRIC: {
                 val request = ShhPostRequest.builder()
-                        .symKeyId(symKeyId)
+                        .pubKey(key)
                         .topic(topic.getData())
                         .payload(payload)
                         .ttl(TTL)
                         .powTarget(POW_TARGET)
                         .powTime(POW_TIME)
                         .build();
-                whisper.post(request);
-                break;
+                return whisperAsync.postAsync(request).thenApply(hash -> null);
+            }
+
+            case SYMMETRIC: {
+                // The key is registered at the node only once, so the call blocks only for a new key
+                val symKeyId = symKeyCache.get(key);
+                return whisperAsync
+                        .postAsync(newSymPostRequest(topic, symKeyId, payload))
+                        .handle((hash, error) -> {
+                            val cause = error instanceof CompletionException ? error.getCause() : error;
+                            if (SymKeyCache.isUnknownKeyError(cause)) {
+                                // The node might have been restarted and forgot the cached key ID
+                                log.debug("Retry shh_post with the re-registered symmetric key: {}", cause.getMessage());
+                                val newSymKeyId = symKeyCache.reRegister(key, symKeyId);
+                                return whisperAsync.postAsync(newSymPostRequest(topic, newSymKeyId, payload));
+                            }
+                            return error == null
+                                    ? CompletableFuture.completedFuture(hash)
+                                    : CompletableFuture.<String>failedFuture(cause);
+                        })
+                        .thenCompose(Function.identity())
+                        .thenApply(hash -> null);
             }
+
+            default:
+                // encType cannot be null, so it is impossible to get there
+                // But because the Java compiler does not know that, it requires
+                // a return statement. The exception is just a workaround for the situation
+                throw new VaspException("It's impossible to get here");
         }
     }
 
+    private ShhPostRequest newSymPostRequest(
+            @NonNull final Topic topic,
+            final String symKeyId,
+            @NonNull final String payload) {
+
+        return ShhPostRequest.builder()
+                .symKeyId(symKeyId)
+                .topic(topic.getData())
+                .payload(payload)
+                .ttl(TTL)
+                .powTarget(POW_TARGET)
+                .powTime(POW_TIME)
+                .build();
+    }
+
     @Override
     public long addTopicListener(
             @NonNull final Topic topic,
@@ -166,12 +312,26 @@ public final class WhisperServiceImpl implements WhisperService {
 
         listenerRecordsLock.lock();
         try {
-            TopicListenerRecord listenerRecord = listenerRecords.get(topic);
-            if (listenerRecord == null) {
-                listenerRecord = new TopicListenerRecord(topic, encType, key);
-                listenerRecords.put(topic, listenerRecord);
+            val listenerRecord = listenerRecords.get(topic);
+            if (listenerRecord != null) {
+                return listenerRecord.addTopicListener(listener);
+            }
+
+            // The messages are taken without listenerRecordsLock, so the listener has to be in place
+            // before the filter is created, otherwise the first messages would find no listener
+            val newRecord = new TopicListenerRecord(topic, encType, key);
+            val listenerId = newRecord.addTopicListener(listener);
+            listenerRecords.put(topic, newRecord);
+            try {
+                filterManager.addTopic(topic, encType, key);
+            } catch (RuntimeException ex) {
+                listenerRecords.remove(topic);
+                throw ex;
             }
-            return listenerRecord.addTopicListener(listener);
+
+            // The new filter has to be polled without waiting for the idle interval
+            wakeUpPolling();
+            return listenerId;
         } finally {
             listenerRecordsLock.unlock();
         }
@@ -189,7 +349,7 @@ public final class WhisperServiceImpl implements WhisperService {
                 listenerRecord.removeTopicListener(listenerId);
                 if (listenerRecord.isEmpty()) {
                     listenerRecords.remove(topic);
-                    listenerRecord.close();
+                    filterManager.removeTopic(topic);
                 }
             }
         } finally {
@@ -197,66 +357,72 @@ public final class WhisperServiceImpl implements WhisperService {
         }
     }
 
-    private Tuple2<String, String> createWhisperMessageFilter(
-            @NonNull final Topic topic,
+    @Override
+    public Map<Topic, Long> addTopicListeners(
+            @NonNull final Collection<Topic> topics,
             @NonNull final EncryptionType encType,
-            @NonNull final String key) {
+            @NonNull final String key,
+            @NonNull final TopicListener<ShhMessage> listener) {
 
-        final String keyId, filterId;
-        switch (encType) {
-            case ASSYMETRIC: {
-                keyId = whisper.addPrivateKey(key);
-                filterId = whisper.newMessageFilter(ShhNewMessageFilterRequest.builder()
-                        .privateKeyId(keyId)
-                        .topics(Collections.singletonList(topic.getData()))
-                        .build());
-                break;
+        listenerRecordsLock.lock();
+        try {
+            val newTopics = topics.stream()
+                    .distinct()
+                    .filter(topic -> !listenerRecords.containsKey(topic))
+                    .collect(toList());
+            // The listener is in place before the filters are created, as in addTopicListener
+            val newListenerIds = new HashMap<Topic, Long>();
+            for (val topic : newTopics) {
+                val newRecord = new TopicListenerRecord(topic, encType, key);
+                newListenerIds.put(topic, newRecord.addTopicListener(listener));
+                listenerRecords.put(topic, newRecord);
             }
 
-            case SYMMETRIC: {
-                keyId = whisper.addSymKey(key);
-                filterId = whisper.newMessageFilter(ShhNewMessageFilterRequest.builder()
-                        .symKeyId(keyId)
-                        .topics(Collections.singletonList(topic.getData()))
-                        .build());
-                break;
+            if (!newTopics.isEmpty()) {
+                try {
+                    filterManager.addTopics(newTopics, encType, key);
+                } catch (RuntimeException ex) {
+                    newTopics.forEach(listenerRecords::remove);
+                    throw ex;
+                }
+                // The new filters have to be polled without waiting for the idle interval
+                wakeUpPolling();
             }
 
-            default:
-                // encType cannot be null, so it is impossible to get there
-                // But because the Java compiler does not know that, it requires
-                // initialization of final 'keyId' and 'filterId'.
-                // The exception is just a workaround for the situation
-                throw new VaspException("It's impossible to get here");
-        }
-
-        return Tuple2.of(keyId, filterId);
-    }
-
-    private void deleteWhisperMessageFilter(
-            @NonNull final EncryptionType encType,
-            @NonNull final String keyId,
-            @NonNull final String filterId) {
-
-        if (filterId != null) {
-            whisper.deleteMessageFilter(filterId);
-        }
-
-        if (keyId != null) {
-            switch (encType) {
-                case ASSYMETRIC:
-                    whisper.deleteKeyPair(keyId);
-                    break;
-
-                case SYMMETRIC:
-                    whisper.deleteSymKey(keyId);
-                    break;
+            val result = new LinkedHashMap<Topic, Long>();
+            for (val topic : topics) {
+                if (!result.containsKey(topic)) {
+                    val listenerId = newListenerIds.get(topic);
+                    result.put(topic, listenerId != null
+                            ? listenerId
+                            : listenerRecords.get(topic).addTopicListener(listener));
+                }
             }
+            return result;
+        } finally {
+            listenerRecordsLock.unlock();
         }
     }
 
-    private Stream<ShhMessage> getWhisperMessages(@NonNull final String filterId) {
-        return whisper.getFilterMessages(filterId).stream();
+    @Override
+    public void removeTopicListeners(@NonNull final Map<Topic, Long> listenerIds) {
+        listenerRecordsLock.lock();
+        try {
+            val emptyTopics = new ArrayList<Topic>();
+            listenerIds.forEach((topic, listenerId) -> {
+                val listenerRecord = listenerRecords.get(topic);
+                if (listenerRecord != null) {
+                    listenerRecord.removeTopicListener(listenerId);
+                    if (listenerRecord.isEmpty()) {
+                        listenerRecords.remove(topic);
+                        emptyTopics.add(topic);
+                    }
+                }
+            });
+            filterManager.removeTopics(emptyTopics);
+        } finally {
+            listenerRecordsLock.unlock();
+        }
     }
 
     private void topicPollingLoop() {
@@ -264,7 +430,7 @@ public final class WhisperServiceImpl implements WhisperService {
         try {
             while (!Thread.interrupted() && checkState(RUNNING)) {
                 pollMessages();
-                Thread.sleep(POLL_TIMEOUT);
+                awaitNextPoll();
             }
         } catch (InterruptedException ex) {
             Thread.currentThread().interrupt();
@@ -276,45 +442,115 @@ public final class WhisperServiceImpl implements WhisperService {
         } catch (Exception ex) {
             log.error(formatErrorMessage(), ex);
         } finally {
+            pollExecutor.shutdownNow();
             setTerminatedState();
             log.debug("{} terminated", Thread.currentThread().getName());
         }
     }
 
-    private void pollMessages() {
-        final List<ShhMessage> incomingMessages;
+    private void pollMessages() throws InterruptedException {
+        // The subscriptions of the saturated topics are paused, the ones having room again are resumed
+        filterManager.updateSubscriptions();
 
-        listenerRecordsLock.lock();
+        // The messages left in the filters replaced since the last poll
+        filterManager.drainPendingMessages().forEach(this::processIncomingMassage);
+
+        // The snapshot of the due filters is taken without listenerRecordsLock,
+        // so adding or removing a listener never waits for a slow poll
+        val filterIds = filterManager.dueFilterIds(System.currentTimeMillis());
+
+        // One HTTP exchange per batch instead of one per filter, the batches are sent concurrently
+        val batches = Lists.partition(filterIds, pollBatchSize);
+        val completionService = new ExecutorCompletionService<List<ShhMessage>>(pollExecutor);
+        for (val batch : batches) {
+            completionService.submit(() -> pollBatch(batch));
+        }
+
+        // The messages are dispatched as soon as their batch is fetched
+        for (int i = 0; i < batches.size(); i++) {
+            try {
+                completionService.take().get().forEach(this::processIncomingMassage);
+            } catch (ExecutionException ex) {
+                val cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new VaspException(cause);
+            }
+        }
+    }
+
+    private List<ShhMessage> pollBatch(final List<String> filterIds) {
+        List<List<ShhMessage>> batchMessages;
         try {
-            incomingMessages = listenerRecords.values()
-                    .stream()
-                    .map(TopicListenerRecord::getFilterId)
-                    .flatMap(this::getWhisperMessages)
-                    .collect(toList());
+            batchMessages = whisper.getFilterMessagesBatch(filterIds);
+        } catch (WhisperApiError ex) {
+            // Some filter is unknown to the node, so the batch is polled filter by filter
+            log.debug("Poll the Whisper message filters one by one: {}", ex.getMessage());
+            batchMessages = filterIds.stream().map(this::pollFilter).collect(toList());
+        }
+
+        val now = System.currentTimeMillis();
+        val result = new ArrayList<ShhMessage>();
+        for (int i = 0; i < batchMessages.size(); i++) {
+            val filterMessages = batchMessages.get(i);
+            filterManager.onFilterPolled(filterIds.get(i), !filterMessages.isEmpty(), now);
+            result.addAll(filterMessages);
+        }
+        return result;
+    }
+
+    private List<ShhMessage> pollFilter(final String filterId) {
+        try {
+            return whisper.getFilterMessages(filterId);
+        } catch (WhisperApiError ex) {
+            // The filter was either removed in the meantime or lost by the node
+            try {
+                filterManager.recreateFilter(filterId);
+            } catch (RuntimeException recreateEx) {
+                log.error("Error of re-creating the Whisper message filter " + filterId, recreateEx);
+                exceptionHandler.processException(recreateEx);
+            }
+            return Collections.emptyList();
+        }
+    }
+
+    private void awaitNextPoll() throws InterruptedException {
+        pollCtl.lock();
+        try {
+            val delay = filterManager.nextPollDelay(System.currentTimeMillis());
+            if (delay > 0 && !pollRequested) {
+                pollWakeup.await(delay, TimeUnit.MILLISECONDS);
+            }
+            pollRequested = false;
         } finally {
-            listenerRecordsLock.unlock();
+            pollCtl.unlock();
         }
+    }
 
-        for (val message : incomingMessages) {
-            processIncomingMassage(message);
+    private void wakeUpPolling() {
+        pollCtl.lock();
+        try {
+            pollRequested = true;
+            pollWakeup.signalAll();
+        } finally {
+            pollCtl.unlock();
         }
     }
 
     private void processIncomingMassage(@NonNull final ShhMessage whisperMessage) {
         val topic = new Topic(whisperMessage.getTopic());
-        try {
-            val listenerRecord = listenerRecords.get(topic);
-            if (listenerRecord != null) {
-                listenerRecord.onTopicEvent(new TopicEvent<>(topic, whisperMessage));
-            }
-        } catch (WhisperIOException ex) {
-            throw ex;
-        } catch (VaspException ex) {
-            log.error("Error of processing a Whisper incoming message at the topic " + topic, ex);
-            exceptionHandler.processException(ex);
+        val listenerRecord = listenerRecords.get(topic);
+        if (listenerRecord != null) {
+            listenerRecord.onTopicEvent(new TopicEvent<>(topic, whisperMessage));
         }
     }
 
+    private boolean isSaturated(final Topic topic) {
+        val listenerRecord = listenerRecords.get(topic);
+        return listenerRecord != null && listenerRecord.isSaturated();
+    }
+
     private boolean checkState(final int expectedState) {
         stateCtl.lock();
         try {
@@ -341,14 +577,17 @@ public final class WhisperServiceImpl implements WhisperService {
     private static final AtomicLong nextTopicListenerId = new AtomicLong(0L);
 
     @Getter
-    class TopicListenerRecord implements AutoCloseable, TopicListener<ShhMessage> {
+    class TopicListenerRecord implements TopicListener<ShhMessage> {
 
         final Topic topic;
         final EncryptionType encType;
         final String key;
-        String keyId;
-        String filterId;
         private final Map<Long, TopicListener<ShhMessage>> topicListeners = new LinkedHashMap<>();
+        // The events are dispatched one by one to preserve their order within the topic,
+        // the queue takes no memory until the events arrive. The queue is not bounded, so no event is lost,
+        // the size limit is kept by the filter manager, which stops taking the messages of a saturated topic
+        private final BlockingQueue<TopicEvent<ShhMessage>> dispatchQueue = new LinkedBlockingQueue<>();
+        private final AtomicBoolean dispatchScheduled = new AtomicBoolean(false);
 
         TopicListenerRecord(
                 @NonNull final Topic topic,
@@ -358,24 +597,68 @@ public final class WhisperServiceImpl implements WhisperService {
             this.topic = topic;
             this.encType = encType;
             this.key = key;
-
-            val keyFilterIds = createWhisperMessageFilter(topic, encType, key);
-            this.keyId = keyFilterIds._1;
-            this.filterId = keyFilterIds._2;
         }
 
+        /**
+         * Queues the event for the dispatch executor. The caller is the shared polling or subscription thread,
+         * so it never waits for the listeners: when the queue of the topic gets full, the polling thread
+         * is woken up to pause the subscription of the topic.
+         */
         @Override
-        public void close() {
-            deleteWhisperMessageFilter(encType, keyId, filterId);
+        public void onTopicEvent(@NonNull final TopicEvent<ShhMessage> event) {
+            dispatchQueue.add(event);
+            if (isSaturated()) {
+                wakeUpPolling();
+            }
+
+            if (dispatchScheduled.compareAndSet(false, true)) {
+                try {
+                    dispatchExecutor.execute(this::drainDispatchQueue);
+                } catch (RejectedExecutionException ex) {
+                    // The service is closed
+                    dispatchScheduled.set(false);
+                }
+            }
         }
 
-        @Override
-        public synchronized void onTopicEvent(@NonNull final TopicEvent<ShhMessage> event) {
-            for (val listener : Lists.newArrayList(topicListeners.values())) {
-                listener.onTopicEvent(event);
+        private void dispatchEvents(@NonNull final List<TopicEvent<ShhMessage>> events) {
+            // The listeners are called outside of the lock, so a slow listener
+            // does not block adding or removing the other ones
+            final List<TopicListener<ShhMessage>> listeners;
+            synchronized (this) {
+                listeners = Lists.newArrayList(topicListeners.values());
+            }
+
+            for (val listener : listeners) {
+                try {
+                    listener.onTopicEvents(events);
+                } catch (RuntimeException ex) {
+                    log.error("Error of processing a Whisper incoming message at the topic " + topic, ex);
+                    exceptionHandler.processException(ex);
+                }
             }
         }
 
+        private void drainDispatchQueue() {
+            do {
+                // The events queued meanwhile are passed to the listeners at once,
+                // so they can process them in bulk
+                final List<TopicEvent<ShhMessage>> events = new ArrayList<>();
+                boolean saturated = isSaturated();
+                while (dispatchQueue.drainTo(events, DISPATCH_BATCH_SIZE) > 0) {
+                    dispatchEvents(events);
+                    events.clear();
+                    if (saturated && !isSaturated()) {
+                        // The topic has room again, so its filter is polled or its subscription resumed
+                        wakeUpPolling();
+                    }
+                    saturated = isSaturated();
+                }
+                dispatchScheduled.set(false);
+                // An event might have been queued after the last poll but before the flag was reset
+            } while (!dispatchQueue.isEmpty() && dispatchScheduled.compareAndSet(false, true));
+        }
+
         synchronized long addTopicListener(@NonNull final TopicListener<ShhMessage> topicListener) {
             val topicListenerId = nextTopicListenerId.incrementAndGet();
             topicListeners.put(topicListenerId, topicListener);
@@ -386,6 +669,13 @@ public final class WhisperServiceImpl implements WhisperService {
             topicListeners.remove(topicListenerId);
         }
 
+        /**
+         * @return true if the dispatch queue is full, so the messages of the topic are left at the node
+         */
+        boolean isSaturated() {
+            return dispatchQueue.size() >= dispatchQueueSize;
+        }
+
         synchronized boolean isEmpty() {
             return topicListeners.isEmpty();
         }
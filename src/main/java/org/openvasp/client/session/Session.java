@@ -6,6 +6,7 @@ import org.openvasp.client.model.VaspMessage;
 import org.openvasp.client.session.impl.SessionState;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 
 /**
@@ -23,6 +24,8 @@ public interface Session {
 
     void sendMessage(VaspMessage vaspMessage);
 
+    CompletableFuture<Void> sendMessageAsync(VaspMessage vaspMessage);
+
     Optional<VaspMessage> takeIncomingMessage(long timeout);
 
     void setMessageHandler(BiConsumer<VaspMessage, Session> handler);
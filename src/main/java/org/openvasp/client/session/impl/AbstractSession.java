@@ -14,6 +14,7 @@ import org.openvasp.client.session.Session;
 import java.util.LinkedList;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -84,8 +85,7 @@ abstract class AbstractSession implements Session {
 
     @Override
     public void sendMessage(@NonNull final VaspMessage message) {
-        message.getHeader().setMessageId(VaspUtils.newMessageId());
-        message.getHeader().setSessionId(sessionId);
+        prepareOutgoingMessage(message);
 
         messageService().send(
                 outgoingMessageTopic(),
@@ -94,6 +94,22 @@ abstract class AbstractSession implements Session {
                 message);
     }
 
+    @Override
+    public CompletableFuture<Void> sendMessageAsync(@NonNull final VaspMessage message) {
+        prepareOutgoingMessage(message);
+
+        return messageService().sendAsync(
+                outgoingMessageTopic(),
+                EncryptionType.SYMMETRIC,
+                sharedSecret,
+                message);
+    }
+
+    void prepareOutgoingMessage(@NonNull final VaspMessage message) {
+        message.getHeader().setMessageId(VaspUtils.newMessageId());
+        message.getHeader().setSessionId(sessionId);
+    }
+
     void addToIncomingQueue(@NonNull final VaspMessage message) {
         incomingQueueLock.lock();
         try {
@@ -72,14 +72,14 @@ final class BeneficiarySessionImpl extends AbstractSession implements Beneficiar
     }
 
     @Override
-    public void sendMessage(@NonNull final VaspMessage message) {
+    void prepareOutgoingMessage(@NonNull final VaspMessage message) {
         if (message instanceof SessionReply) {
             val sessionReply = (SessionReply) message;
             sessionReply.setHandshake(new SessionReply.Handshake(topicB));
             sessionReply.setVaspInfo(owner.vaspInfo);
         }
 
-        super.sendMessage(message);
+        super.prepareOutgoingMessage(message);
     }
 
     @Override
@@ -82,12 +82,12 @@ final class OriginatorSessionImpl extends AbstractSession implements OriginatorS
     }
 
     @Override
-    public void sendMessage(@NonNull final VaspMessage message) {
+    void prepareOutgoingMessage(@NonNull final VaspMessage message) {
         checkArgument(
                 !(message instanceof SessionRequest),
                 "SessionRequest must be sent only by 'startTransfer' method.");
 
-        super.sendMessage(message);
+        super.prepareOutgoingMessage(message);
     }
 
     @Override
@@ -216,14 +216,20 @@ public final class SessionManagerImpl implements SessionManager, VaspIdentitySer
             return Optional.of(message.asSessionReply().getVaspInfo().getVaspId());
         }
 
+        // Called for every incoming message, so the sessions are looked up by ID without the sessions lock
         val sessionId = message.getHeader().getSessionId();
-        for (val session : allSessions()) {
-            if (sessionId.equals(session.sessionId())) {
-                return Optional.of(session.peerVaspInfo().getVaspId());
-            }
+        if (sessionId == null) {
+            return Optional.empty();
+        }
+
+        Session session = originatorSessions.get(sessionId);
+        if (session == null) {
+            session = beneficiarySessions.get(sessionId);
         }
 
-        return Optional.empty();
+        return Optional.ofNullable(session)
+                .map(Session::peerVaspInfo)
+                .map(VaspInfo::getVaspId);
     }
 
 }
@@ -0,0 +1,115 @@
+package org.openvasp.client.api.whisper.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openvasp.client.api.whisper.WhisperApiError;
+import org.openvasp.client.api.whisper.WhisperIOException;
+import org.openvasp.client.api.whisper.model.ShhMessage;
+import org.openvasp.client.api.whisper.model.ShhPostRequest;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WhisperApiImplTests {
+
+    @Mock
+    Web3jService web3jService;
+
+    WhisperApiImpl whisperApi;
+
+    @BeforeEach
+    public void init() {
+        whisperApi = new WhisperApiImpl(web3jService);
+    }
+
+    @Test
+    public void invokeAsyncTest() {
+        WhisperApiImpl.StringResponse okResponse = new WhisperApiImpl.StringResponse();
+        okResponse.setResult("hash");
+        WhisperApiImpl.StringResponse errorResponse = new WhisperApiImpl.StringResponse();
+        errorResponse.setError(new Response.Error(-32000, "non-existent key ID"));
+        when(web3jService.sendAsync(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(okResponse))
+                .thenReturn(CompletableFuture.completedFuture(errorResponse))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Connection refused")));
+
+        Assertions.assertEquals("hash", whisperApi.postAsync(ShhPostRequest.builder().build()).join());
+
+        CompletionException ex = Assertions.assertThrows(
+                CompletionException.class,
+                () -> whisperApi.postAsync(ShhPostRequest.builder().build()).join());
+        Assertions.assertTrue(ex.getCause() instanceof WhisperApiError);
+
+        ex = Assertions.assertThrows(
+                CompletionException.class,
+                () -> whisperApi.postAsync(ShhPostRequest.builder().build()).join());
+        Assertions.assertTrue(ex.getCause() instanceof WhisperIOException);
+    }
+
+    @Test
+    public void getFilterMessagesBatchTest() throws IOException {
+        when(web3jService.sendBatch(any())).thenAnswer(invocation -> {
+            BatchRequest batch = invocation.getArgument(0);
+            List<Response<?>> responses = new ArrayList<>();
+            for (int i = batch.getRequests().size() - 1; i >= 0; i--) {
+                // Reply in the reverse order, each filter returns a message with the filter ID as a topic
+                WhisperApiImpl.MessageListResponse response = new WhisperApiImpl.MessageListResponse();
+                response.setId(batch.getRequests().get(i).getId());
+                response.setResult(Collections.singletonList(newMessage((String) batch.getRequests().get(i).getParams().get(0))));
+                responses.add(response);
+            }
+            return new BatchResponse(batch.getRequests(), responses);
+        });
+
+        List<List<ShhMessage>> result = whisperApi.getFilterMessagesBatch(Arrays.asList("f1", "f2", "f3"));
+
+        verify(web3jService, times(1)).sendBatch(any());
+        Assertions.assertEquals(3, result.size());
+        Assertions.assertEquals("f1", result.get(0).get(0).getTopic());
+        Assertions.assertEquals("f2", result.get(1).get(0).getTopic());
+        Assertions.assertEquals("f3", result.get(2).get(0).getTopic());
+    }
+
+    @Test
+    public void getFilterMessagesBatchErrorTest() throws IOException {
+        when(web3jService.sendBatch(any())).thenAnswer(invocation -> {
+            BatchRequest batch = invocation.getArgument(0);
+            WhisperApiImpl.MessageListResponse response = new WhisperApiImpl.MessageListResponse();
+            response.setId(batch.getRequests().get(0).getId());
+            response.setError(new Response.Error(-32000, "filter not found"));
+            return new BatchResponse(batch.getRequests(), Collections.singletonList(response));
+        });
+
+        Assertions.assertThrows(WhisperApiError.class, () -> whisperApi.getFilterMessagesBatch(Collections.singletonList("f1")));
+    }
+
+    @Test
+    public void getFilterMessagesEmptyBatchTest() throws IOException {
+        Assertions.assertTrue(whisperApi.getFilterMessagesBatch(Collections.emptyList()).isEmpty());
+        verify(web3jService, never()).sendBatch(any());
+    }
+
+    private static ShhMessage newMessage(final String topic) {
+        ShhMessage message = new ShhMessage();
+        message.setTopic(topic);
+        return message;
+    }
+
+}
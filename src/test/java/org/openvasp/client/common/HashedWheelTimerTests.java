@@ -0,0 +1,88 @@
+package org.openvasp.client.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HashedWheelTimerTests {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("TestTimer", 10, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    public void close() {
+        timer.close();
+    }
+
+    @Test
+    public void expirationTest() throws Exception {
+        CompletableFuture<Long> expired = new CompletableFuture<>();
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(
+                () -> expired.complete(System.nanoTime()), 200, TimeUnit.MILLISECONDS);
+        assertThat(timer.pendingTimeouts()).isEqualTo(1);
+
+        // The deadline spans more than one wheel rotation
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(expired.get(5, TimeUnit.SECONDS) - start);
+        assertThat(elapsed).isGreaterThanOrEqualTo(200);
+        assertThat(timeout.isExpired()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(timer.pendingTimeouts()).isZero();
+    }
+
+    @Test
+    public void orderTest() throws Exception {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        timer.newTimeout(() -> { order.add(3); latch.countDown(); }, 150, TimeUnit.MILLISECONDS);
+        timer.newTimeout(() -> { order.add(1); latch.countDown(); }, 30, TimeUnit.MILLISECONDS);
+        timer.newTimeout(() -> { order.add(2); latch.countDown(); }, 90, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void cancelTest() throws Exception {
+        List<String> expired = new CopyOnWriteArrayList<>();
+        HashedWheelTimer.Timeout cancelled = timer.newTimeout(() -> expired.add("cancelled"), 50, TimeUnit.MILLISECONDS);
+        CompletableFuture<Void> last = new CompletableFuture<>();
+        timer.newTimeout(() -> last.complete(null), 100, TimeUnit.MILLISECONDS);
+
+        assertThat(cancelled.cancel()).isTrue();
+        assertThat(cancelled.cancel()).isFalse();
+        assertThat(cancelled.isCancelled()).isTrue();
+        assertThat(timer.pendingTimeouts()).isEqualTo(1);
+
+        last.get(5, TimeUnit.SECONDS);
+        assertThat(expired).isEmpty();
+    }
+
+    @Test
+    public void failingTaskTest() throws Exception {
+        timer.newTimeout(() -> {
+            throw new IllegalStateException("Test");
+        }, 10, TimeUnit.MILLISECONDS);
+        CompletableFuture<Void> next = new CompletableFuture<>();
+        timer.newTimeout(() -> next.complete(null), 50, TimeUnit.MILLISECONDS);
+
+        // The worker survives a failing task
+        next.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void closeTest() {
+        timer.newTimeout(() -> {}, 10, TimeUnit.MILLISECONDS);
+        timer.close();
+        assertThatThrownBy(() -> timer.newTimeout(() -> {}, 10, TimeUnit.MILLISECONDS))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+}
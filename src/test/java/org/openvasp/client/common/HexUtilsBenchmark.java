@@ -0,0 +1,98 @@
+package org.openvasp.client.common;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.web3j.utils.Numeric;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link HexUtils} with the former regex validation and BouncyCastle based encoding.
+ * <p>
+ * Run with the test classpath, e.g. from the IDE via {@link #main(String[])}.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexUtilsBenchmark {
+
+    private static final Pattern HEXADECIMAL_PATTERN = Pattern.compile("^[0-9a-fA-F]+$");
+
+    // 16 bytes - message and session IDs, 65 bytes - public keys, 1024 bytes - payloads
+    @Param({"16", "65", "1024"})
+    private int size;
+
+    private byte[] bytes;
+    private String hex;
+    private byte[] decoded;
+    private char[] encoded;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(1).nextBytes(bytes);
+        hex = "0x" + Hex.toHexString(bytes);
+        decoded = new byte[size];
+        encoded = new char[2 * size];
+    }
+
+    @Benchmark
+    public boolean isValidHexRegex() {
+        return HEXADECIMAL_PATTERN.matcher(Numeric.cleanHexPrefix(hex)).matches();
+    }
+
+    @Benchmark
+    public boolean isValidHexTable() {
+        return HexUtils.isValidHex(hex, 2, hex.length() - 2);
+    }
+
+    @Benchmark
+    public String toHexBouncyCastle() {
+        return "0x" + Hex.toHexString(bytes);
+    }
+
+    @Benchmark
+    public String toHexTable() {
+        return HexUtils.toHex(bytes, true);
+    }
+
+    @Benchmark
+    public char[] encodeIntoArray() {
+        HexUtils.encode(bytes, 0, bytes.length, encoded, 0);
+        return encoded;
+    }
+
+    @Benchmark
+    public byte[] toBytesBouncyCastle() {
+        return Hex.decode(hex.substring(2));
+    }
+
+    @Benchmark
+    public byte[] toBytesTable() {
+        return HexUtils.toBytes(hex);
+    }
+
+    @Benchmark
+    public byte[] decodeIntoArray() {
+        HexUtils.decode(hex, 2, hex.length() - 2, decoded, 0);
+        return decoded;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HexUtilsBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+}
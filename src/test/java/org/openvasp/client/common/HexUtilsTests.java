@@ -0,0 +1,73 @@
+package org.openvasp.client.common;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class HexUtilsTests {
+
+    @Test
+    public void isValidHexTest() {
+        Assertions.assertTrue(HexUtils.isValidHex("0123456789abcdefABCDEF"));
+        Assertions.assertTrue(HexUtils.isValidHex("0x0a"));
+        Assertions.assertFalse(HexUtils.isValidHex(""));
+        Assertions.assertFalse(HexUtils.isValidHex("0x"));
+        Assertions.assertFalse(HexUtils.isValidHex("0X0a"));
+        Assertions.assertFalse(HexUtils.isValidHex("0a g"));
+        Assertions.assertFalse(HexUtils.isValidHex("0aé"));
+
+        Assertions.assertTrue(HexUtils.isValidHex("zz0a1bzz", 2, 4));
+        Assertions.assertFalse(HexUtils.isValidHex("zz0a1bzz", 1, 4));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> HexUtils.isValidHex("0a", 1, 2));
+    }
+
+    @Test
+    public void encodeDecodeTest() {
+        byte[] bytes = new byte[256];
+        new Random(1).nextBytes(bytes);
+
+        String hex = HexUtils.toHex(bytes, true);
+        Assertions.assertEquals("0x" + Hex.toHexString(bytes), hex);
+        Assertions.assertEquals(Hex.toHexString(bytes), HexUtils.toHex(bytes, false));
+        Assertions.assertArrayEquals(bytes, HexUtils.toBytes(hex));
+        Assertions.assertArrayEquals(bytes, HexUtils.toBytes(hex.substring(2).toUpperCase()));
+
+        byte[] decoded = new byte[bytes.length + 2];
+        Assertions.assertEquals(bytes.length, HexUtils.decode(hex, 2, hex.length() - 2, decoded, 1));
+        for (int i = 0; i < bytes.length; i++) {
+            Assertions.assertEquals(bytes[i], decoded[i + 1]);
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> HexUtils.toBytes("0x0a0"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> HexUtils.toBytes("0x0g"));
+    }
+
+    @Test
+    public void encodeInPlaceTest() {
+        byte[] json = "{\"a\":\"ü\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] buffer = new byte[2 + 2 * json.length];
+        System.arraycopy(json, 0, buffer, 0, json.length);
+
+        HexUtils.encode(buffer, 0, json.length, buffer, 2);
+        buffer[0] = '0';
+        buffer[1] = 'x';
+        Assertions.assertEquals(HexUtils.toHex(json, true), new String(buffer, StandardCharsets.US_ASCII));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> HexUtils.encode(buffer, 2, 1, buffer, 0));
+    }
+
+    @Test
+    public void constantTimeEqualsTest() {
+        Assertions.assertTrue(HexUtils.constantTimeEquals(new byte[]{1, 2, 3}, new byte[]{1, 2, 3}));
+        Assertions.assertFalse(HexUtils.constantTimeEquals(new byte[]{1, 2, 3}, new byte[]{1, 2, 4}));
+        Assertions.assertFalse(HexUtils.constantTimeEquals(new byte[]{1, 2, 3}, new byte[]{1, 2}));
+
+        Assertions.assertTrue(HexUtils.constantTimeEquals("0xabcdef", "0xabcdef"));
+        Assertions.assertFalse(HexUtils.constantTimeEquals("0xabcdef", "0xabcdee"));
+        Assertions.assertFalse(HexUtils.constantTimeEquals("0xabcdef", "0xabcde"));
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.openvasp.client.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openvasp.client.model.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+public class PayloadCodecTests {
+
+    private static final String[] MESSAGE_FILES = {
+            "session-request.json",
+            "session-reply.json",
+            "transfer-request.json",
+            "transfer-reply.json",
+            "transfer-dispatch.json",
+            "transfer-confirmation.json",
+            "termination.json"
+    };
+
+    @Test
+    public void encodeTest() {
+        for (String fileName : MESSAGE_FILES) {
+            VaspMessage message = VaspMessage.fromJson(Json.loadTestJson("serialization/messages/" + fileName));
+            Assertions.assertEquals(VaspUtils.hexStrEncode(Json.toJson(message), true), PayloadCodec.encode(message));
+        }
+    }
+
+    @Test
+    public void encodeNonAsciiTest() {
+        TerminationMessage message = new TerminationMessage();
+        message.setComment("Grüße, 日本");
+        Assertions.assertEquals(
+                VaspUtils.toHex(Json.toJson(message).getBytes(StandardCharsets.UTF_8), true),
+                PayloadCodec.encode(message));
+    }
+
+    @Test
+    public void encodeBufferGrowthTest() {
+        TerminationMessage message = new TerminationMessage();
+        message.setComment("x".repeat(300_000));
+        Assertions.assertEquals(VaspUtils.hexStrEncode(Json.toJson(message), true), PayloadCodec.encode(message));
+        Assertions.assertEquals("0x7b7d", PayloadCodec.encode(Collections.emptyMap()));
+    }
+
+    @Test
+    public void decodeTest() {
+        String json = "{\"comment\":\"Grüße\"}";
+        String payload = VaspUtils.toHex(json.getBytes(StandardCharsets.UTF_8), true);
+
+        Assertions.assertEquals(json, PayloadCodec.decode(payload, (bytes, offset, length) ->
+                new String(bytes, offset, length, StandardCharsets.UTF_8)));
+        Assertions.assertEquals(json, PayloadCodec.decode(payload.substring(2).toUpperCase() + "abcd", payload.length() - 2,
+                (bytes, offset, length) -> new String(bytes, offset, length, StandardCharsets.UTF_8)));
+
+        VaspMessage message = PayloadCodec.decode(PayloadCodec.encode(new TransferConfirmation()), VaspMessage::fromJson);
+        Assertions.assertEquals(TransferConfirmation.class, message.getClass());
+    }
+
+    @Test
+    public void decodeInvalidTest() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PayloadCodec.decode("0x7b7", (bytes, offset, length) -> length));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PayloadCodec.decode("0x7g7d", (bytes, offset, length) -> length));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PayloadCodec.decode("0x7b", 3, (bytes, offset, length) -> length));
+        Assertions.assertEquals(Integer.valueOf(0), PayloadCodec.decode("0x", (bytes, offset, length) -> length));
+    }
+
+}
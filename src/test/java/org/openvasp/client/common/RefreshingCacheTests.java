@@ -0,0 +1,207 @@
+package org.openvasp.client.common;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RefreshingCacheTests {
+
+    private static final long TTL = 10_000;
+    private static final long REFRESH_INTERVAL = 1_000;
+
+    private final FakeTicker ticker = new FakeTicker();
+    private final List<CompletableFuture<String>> loads = new ArrayList<>();
+
+    private final RefreshingCache<String, String> cache = new RefreshingCache<>(
+            2, TTL, REFRESH_INTERVAL, key -> newLoad(), ticker);
+
+    @Test
+    public void loadAndCacheTest() {
+        CompletableFuture<String> call1 = cache.getAsync("key");
+        CompletableFuture<String> call2 = cache.getAsync("key");
+        assertThat(loads).hasSize(1);
+
+        loads.get(0).complete("value");
+        assertThat(call1.join()).isEqualTo("value");
+        assertThat(call2.join()).isEqualTo("value");
+        assertThat(cache.get("key")).isEqualTo("value");
+        assertThat(loads).hasSize(1);
+    }
+
+    @Test
+    public void refreshAheadTest() {
+        cache.put("key", "value");
+
+        ticker.advance(REFRESH_INTERVAL);
+        // The stale value is served while it is reloaded, only one reload is started
+        assertThat(cache.get("key")).isEqualTo("value");
+        assertThat(cache.get("key")).isEqualTo("value");
+        assertThat(loads).hasSize(1);
+
+        loads.get(0).complete("new value");
+        assertThat(cache.get("key")).isEqualTo("new value");
+    }
+
+    @Test
+    public void refreshFailureTest() {
+        cache.put("key", "value");
+
+        ticker.advance(REFRESH_INTERVAL);
+        assertThat(cache.get("key")).isEqualTo("value");
+        loads.get(0).completeExceptionally(new VaspException("Node is not available"));
+
+        // The stale value is kept and the refresh is retried after the next interval
+        assertThat(cache.get("key")).isEqualTo("value");
+        assertThat(loads).hasSize(1);
+        ticker.advance(REFRESH_INTERVAL);
+        assertThat(cache.get("key")).isEqualTo("value");
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    public void expirationTest() {
+        cache.put("key", "value");
+
+        ticker.advance(TTL);
+        assertThat(cache.getIfPresent("key")).isEqualTo(Optional.empty());
+        CompletableFuture<String> call = cache.getAsync("key");
+        assertThat(call).isNotDone();
+        loads.get(0).completeExceptionally(new VaspException("Node is not available"));
+        assertThatThrownBy(() -> SingleFlight.await(call)).isInstanceOf(VaspException.class);
+
+        // The failure is not cached
+        assertThat(cache.getAsync("key")).isNotDone();
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    public void maxSizeTest() {
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.get("key1");
+        cache.put("key3", "value3");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getIfPresent("key1")).contains("value1");
+        assertThat(cache.getIfPresent("key2")).isEmpty();
+    }
+
+    @Test
+    public void invalidateTest() {
+        CompletableFuture<String> call = cache.getAsync("key");
+        cache.invalidate("key");
+
+        // The load started before the invalidation is not cached
+        loads.get(0).complete("stale value");
+        assertThat(call.join()).isEqualTo("stale value");
+        assertThat(cache.getIfPresent("key")).isEmpty();
+
+        cache.put("key", "value");
+        cache.invalidateAll();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void refreshTest() {
+        cache.put("key", "value");
+        CompletableFuture<String> refresh = cache.refresh("key");
+
+        // The cached value is served while the reload runs
+        assertThat(cache.getAsync("key").join()).isEqualTo("value");
+        loads.get(0).complete("new value");
+        assertThat(refresh.join()).isEqualTo("new value");
+        assertThat(cache.getIfPresent("key")).contains("new value");
+    }
+
+    @Test
+    public void invalidateOtherKeyTest() {
+        CompletableFuture<String> call1 = cache.getAsync("key1");
+        CompletableFuture<String> call2 = cache.getAsync("key2");
+        cache.invalidate("key1");
+
+        // Only the load of the invalidated key is discarded
+        loads.get(0).complete("stale value");
+        loads.get(1).complete("value2");
+        assertThat(call1.join()).isEqualTo("stale value");
+        assertThat(call2.join()).isEqualTo("value2");
+        assertThat(cache.getIfPresent("key1")).isEmpty();
+        assertThat(cache.getIfPresent("key2")).contains("value2");
+
+        // The next load of the invalidated key is cached again
+        CompletableFuture<String> call3 = cache.getAsync("key1");
+        loads.get(2).complete("value1");
+        assertThat(call3.join()).isEqualTo("value1");
+        assertThat(cache.getIfPresent("key1")).contains("value1");
+    }
+
+    @Test
+    public void listenerTest() {
+        Map<String, String> followed = new HashMap<>();
+        RefreshingCache<String, String> followedCache = new RefreshingCache<>(
+                2, TTL, REFRESH_INTERVAL, key -> newLoad(), new RefreshingCache.Listener<String, String>() {
+                    @Override
+                    public void onCached(final String key, final String value) {
+                        followed.put(key, value);
+                    }
+
+                    @Override
+                    public void onRemoved(final String key) {
+                        followed.remove(key);
+                    }
+                }, ticker);
+
+        // The preloaded value is not reported
+        followedCache.preload("key1", "value1");
+        assertThat(followed).isEmpty();
+
+        CompletableFuture<String> call = followedCache.getAsync("key2");
+        loads.get(0).complete("value2");
+        assertThat(call.join()).isEqualTo("value2");
+        followedCache.put("key2", "new value2");
+        assertThat(followed).containsOnly(Map.entry("key2", "new value2"));
+
+        // Invalidated, evicted and expired entries are reported
+        followedCache.invalidate("key2");
+        assertThat(followed).isEmpty();
+        followedCache.put("key3", "value3");
+        followedCache.put("key4", "value4");
+        followedCache.put("key5", "value5");
+        assertThat(followed).containsOnlyKeys("key4", "key5");
+        ticker.advance(TTL);
+        followedCache.cleanUp();
+        assertThat(followed).isEmpty();
+    }
+
+    private CompletableFuture<String> newLoad() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        loads.add(load);
+        return load;
+    }
+
+    private static final class FakeTicker extends Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(final long ms) {
+            nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+    }
+
+}
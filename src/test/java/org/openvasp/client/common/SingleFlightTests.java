@@ -0,0 +1,104 @@
+package org.openvasp.client.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTests {
+
+    @Test
+    public void executeAsyncTest() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> load = new CompletableFuture<>();
+
+        CompletableFuture<String> call1 = singleFlight.executeAsync("key", key -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<String> call2 = singleFlight.executeAsync("key", key -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        assertThat(singleFlight.size()).isEqualTo(1);
+
+        // Cancelling one of the callers does not affect the others
+        call1.cancel(false);
+
+        load.complete("value");
+        assertThat(call2.join()).isEqualTo("value");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(singleFlight.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void failureNotCachedTest() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        CompletableFuture<String> failed = singleFlight.executeAsync("key", key ->
+                CompletableFuture.supplyAsync(() -> {
+                    throw new VaspException("Node is not available");
+                }));
+        assertThatThrownBy(() -> SingleFlight.await(failed))
+                .isInstanceOf(VaspException.class)
+                .hasMessage("Node is not available");
+
+        assertThat(singleFlight.executeAsync("key", key -> CompletableFuture.completedFuture("value")).join())
+                .isEqualTo("value");
+
+        assertThatThrownBy(() -> singleFlight.execute("key", key -> {
+            throw new IllegalStateException("Resolution failed");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.execute("key", key -> "value")).isEqualTo("value");
+        assertThat(singleFlight.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void executeConcurrentlyTest() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", key -> {
+                loads.incrementAndGet();
+                loadStarted.countDown();
+                try {
+                    loadReleased.await();
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                return "value";
+            }));
+            loadStarted.await();
+
+            // The callers join the call in flight
+            List<CompletableFuture<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                followers.add(singleFlight.executeAsync("key", key -> {
+                    loads.incrementAndGet();
+                    return CompletableFuture.completedFuture("other value");
+                }));
+            }
+            assertThat(followers).noneMatch(CompletableFuture::isDone);
+
+            loadReleased.countDown();
+            assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("value");
+            for (CompletableFuture<String> follower : followers) {
+                assertThat(follower.get(10, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+            assertThat(loads.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.openvasp.client.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openvasp.client.model.EthAddr;
+import org.openvasp.client.model.VaspContractInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openvasp.client.common.TestConstants.CONTRACT_ADDRESS_1;
+import static org.openvasp.client.common.TestConstants.CONTRACT_ADDRESS_2;
+import static org.openvasp.client.common.TestConstants.VASP_CONTRACT_LOCAL_1;
+
+public class SnapshotFileTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void writeAndLoadTest() throws IOException {
+        Path file = tempDir.resolve("snapshots").resolve("contracts.jsonl");
+        VaspContractInfo contractInfo = Json.loadTestJson(VaspContractInfo.class, VASP_CONTRACT_LOCAL_1);
+
+        SnapshotFile<EthAddr, VaspContractInfo> snapshot = new SnapshotFile<>(file, EthAddr.class, VaspContractInfo.class);
+        assertThat(snapshot.load()).isEmpty();
+        snapshot.write(CONTRACT_ADDRESS_1, contractInfo);
+        // The unchanged value is not appended
+        snapshot.write(CONTRACT_ADDRESS_1, contractInfo);
+        assertThat(Files.readAllLines(file)).hasSize(1);
+
+        Map<EthAddr, VaspContractInfo> loaded = new SnapshotFile<>(file, EthAddr.class, VaspContractInfo.class).load();
+        assertThat(loaded).containsOnlyKeys(CONTRACT_ADDRESS_1);
+        assertThat(Json.toJson(loaded.get(CONTRACT_ADDRESS_1))).isEqualTo(Json.toJson(contractInfo));
+    }
+
+    @Test
+    public void latestValueTest() throws IOException {
+        Path file = tempDir.resolve("ens.jsonl");
+
+        SnapshotFile<String, EthAddr> snapshot = new SnapshotFile<>(file, String.class, EthAddr.class);
+        snapshot.write("7dface61.eth", CONTRACT_ADDRESS_1);
+        snapshot.write("7dface61.eth", CONTRACT_ADDRESS_2);
+        // A torn write after a crash
+        Files.write(file, "{\"key\":\"7dface61.eth\",\"val".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        Map<String, EthAddr> loaded = new SnapshotFile<>(file, String.class, EthAddr.class).load();
+        assertThat(loaded).containsExactly(Map.entry("7dface61.eth", CONTRACT_ADDRESS_2));
+    }
+
+    @Test
+    public void removeTest() throws IOException {
+        Path file = tempDir.resolve("ens.jsonl");
+
+        SnapshotFile<String, EthAddr> snapshot = new SnapshotFile<>(file, String.class, EthAddr.class);
+        snapshot.write("7dface61.eth", CONTRACT_ADDRESS_1);
+        snapshot.write("bbb4ee5c.eth", CONTRACT_ADDRESS_2);
+        snapshot.remove("7dface61.eth");
+        // The absent key gets no tombstone
+        snapshot.remove("7dface61.eth");
+        assertThat(Files.readAllLines(file)).hasSize(3);
+
+        Map<String, EthAddr> loaded = new SnapshotFile<>(file, String.class, EthAddr.class).load();
+        assertThat(loaded).containsExactly(Map.entry("bbb4ee5c.eth", CONTRACT_ADDRESS_2));
+    }
+
+    @Test
+    public void removeCompactionTest() throws IOException {
+        Path file = tempDir.resolve("ens.jsonl");
+
+        SnapshotFile<String, String> snapshot = new SnapshotFile<>(file, String.class, String.class);
+        for (int i = 0; i < 500; i++) {
+            snapshot.write("key" + i, "value" + i);
+            snapshot.remove("key" + i);
+        }
+        assertThat(Files.readAllLines(file)).isEmpty();
+        assertThat(new SnapshotFile<>(file, String.class, String.class).load()).isEmpty();
+    }
+
+    @Test
+    public void compactionTest() throws IOException {
+        Path file = tempDir.resolve("ens.jsonl");
+
+        SnapshotFile<String, String> snapshot = new SnapshotFile<>(file, String.class, String.class);
+        for (int i = 0; i < 1000; i++) {
+            snapshot.write("key" + (i % 10), "value" + i);
+        }
+        assertThat(Files.readAllLines(file)).hasSize(10);
+
+        Map<String, String> loaded = new SnapshotFile<>(file, String.class, String.class).load();
+        assertThat(loaded).hasSize(10);
+        assertThat(loaded.get("key9")).isEqualTo("value999");
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.openvasp.client.crypto;
+
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Olexandr_Bilovol@epam.com
+ */
+class PreparedSignerTests {
+
+    @Test
+    void checkWeb3jCompliance() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            ECKeyPair keyPair = Keys.createEcKeyPair();
+            PreparedSigner signer = PreparedSigner.importPrivateKey(
+                    Numeric.toHexStringWithPrefixZeroPadded(keyPair.getPrivateKey(), 64));
+            assertThat(signer.getPublicKey()).isEqualTo(keyPair.getPublicKey());
+
+            byte[] messageHash = Hash.sha3(("message " + i).getBytes(StandardCharsets.UTF_8));
+            Sign.SignatureData expected = Sign.signMessage(messageHash, keyPair, false);
+            Sign.SignatureData actual = signer.signHash(messageHash);
+
+            assertThat(actual.getR()).isEqualTo(expected.getR());
+            assertThat(actual.getS()).isEqualTo(expected.getS());
+            assertThat(actual.getV()).isEqualTo(expected.getV());
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.openvasp.client.model;
+
+import static org.openvasp.client.common.Json.loadTestJson;
+import static org.openvasp.client.model.VaspMessage.TypeDescriptor;
+
+/**
+ * The sample messages of every type, shared by the tests and the benchmarks
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+final class MessageFixtures {
+
+    private static final String SER_DATA_FOLDER = "serialization/messages/";
+
+    private MessageFixtures() {
+    }
+
+    static String loadMessageJson(final TypeDescriptor messageType) {
+        return loadTestJson(SER_DATA_FOLDER + fileName(messageType));
+    }
+
+    private static String fileName(final TypeDescriptor messageType) {
+        switch (messageType) {
+            case SESSION_REQUEST:
+                return "session-request.json";
+            case SESSION_REPLY:
+                return "session-reply.json";
+            case TRANSFER_REQUEST:
+                return "transfer-request.json";
+            case TRANSFER_REPLY:
+                return "transfer-reply.json";
+            case TRANSFER_DISPATCH:
+                return "transfer-dispatch.json";
+            case TRANSFER_CONFIRMATION:
+                return "transfer-confirmation.json";
+            default:
+                return "termination.json";
+        }
+    }
+
+}
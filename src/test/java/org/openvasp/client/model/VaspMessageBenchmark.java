@@ -0,0 +1,86 @@
+package org.openvasp.client.model;
+
+import lombok.val;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openvasp.client.common.Json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.openvasp.client.model.VaspMessage.TypeDescriptor;
+
+/**
+ * Compares {@link VaspMessage#fromJson} with the former tree based deserialization
+ * (read the tree, look up 'msg.type', convert the tree to the concrete class) for every message type.
+ * <p>
+ * Run with the test classpath, e.g. from the IDE via {@link #main(String[])}.
+ *
+ * @author Olexandr_Bilovol@epam.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VaspMessageBenchmark {
+
+    @Param
+    private TypeDescriptor messageType;
+
+    private String json;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setup() {
+        json = MessageFixtures.loadMessageJson(messageType);
+        jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public VaspMessage treeAndConvert() {
+        val rootNode = Json.readTree(json);
+        val messageType = TypeDescriptor.fromIdStr(rootNode.findValue("msg").findValue("type").asText());
+        return Json.convertValue(messageClass(messageType), rootNode);
+    }
+
+    @Benchmark
+    public VaspMessage fromJsonString() {
+        return VaspMessage.fromJson(json);
+    }
+
+    @Benchmark
+    public VaspMessage fromJsonBytes() {
+        return VaspMessage.fromJson(jsonBytes);
+    }
+
+    private static Class<? extends VaspMessage> messageClass(final TypeDescriptor messageType) {
+        switch (messageType) {
+            case SESSION_REQUEST:
+                return SessionRequest.class;
+            case SESSION_REPLY:
+                return SessionReply.class;
+            case TRANSFER_REQUEST:
+                return TransferRequest.class;
+            case TRANSFER_REPLY:
+                return TransferReply.class;
+            case TRANSFER_DISPATCH:
+                return TransferDispatch.class;
+            case TRANSFER_CONFIRMATION:
+                return TransferConfirmation.class;
+            default:
+                return TerminationMessage.class;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VaspMessageBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+}
@@ -3,9 +3,11 @@ package org.openvasp.client.model;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.openvasp.client.common.Json;
 import org.openvasp.client.common.VaspException;
 import org.openvasp.client.common.VaspValidationException;
 
+import java.nio.charset.StandardCharsets;
 import java.util.NoSuchElementException;
 
 public class VaspMessageTests {
@@ -70,4 +72,64 @@ public class VaspMessageTests {
         vaspMessage.setHeader(header);
         Assertions.assertEquals(new Topic("0xea208653"), vaspMessage.getConfirmationTopic());
     }
+
+    @Test
+    public void fromJsonTest() {
+        for (VaspMessage.TypeDescriptor messageType : VaspMessage.TypeDescriptor.values()) {
+            String json = MessageFixtures.loadMessageJson(messageType);
+            VaspMessage expected = VaspMessage.fromJson(json);
+            Assertions.assertEquals(messageType, expected.getHeader().getMessageType());
+            expected.validate();
+
+            VaspMessage fromBytes = VaspMessage.fromJson(json.getBytes(StandardCharsets.UTF_8));
+            Assertions.assertEquals(expected.getClass(), fromBytes.getClass());
+            Assertions.assertEquals(Json.toJson(expected), Json.toJson(fromBytes));
+
+            // The single pass reading gives the same message as the conversion of the parsed tree
+            VaspMessage fromTree = Json.convertValue(messageClass(messageType), Json.readTree(json));
+            Assertions.assertEquals(fromTree.getClass(), expected.getClass());
+            Assertions.assertEquals(Json.MAPPER.valueToTree(fromTree), Json.MAPPER.valueToTree(expected));
+        }
+    }
+
+    private static Class<? extends VaspMessage> messageClass(final VaspMessage.TypeDescriptor messageType) {
+        switch (messageType) {
+            case SESSION_REQUEST:
+                return SessionRequest.class;
+            case SESSION_REPLY:
+                return SessionReply.class;
+            case TRANSFER_REQUEST:
+                return TransferRequest.class;
+            case TRANSFER_REPLY:
+                return TransferReply.class;
+            case TRANSFER_DISPATCH:
+                return TransferDispatch.class;
+            case TRANSFER_CONFIRMATION:
+                return TransferConfirmation.class;
+            case TERMINATION:
+                return TerminationMessage.class;
+            default:
+                throw new IllegalArgumentException("Unknown message type " + messageType);
+        }
+    }
+
+    @Test
+    public void fromJsonHeaderNotFirstTest() {
+        String json = "{\"comment\":\"text\",\"ext\":{\"msg\":{\"type\":\"150\"}}," +
+                "\"msg\":{\"msgid\":\"0x32eaae0fcbf6a342aec65936ea208653\",\"type\":\"910\",\"code\":\"2\"}}";
+        VaspMessage message = VaspMessage.fromJson(json);
+        Assertions.assertEquals(TerminationMessage.class, message.getClass());
+        Assertions.assertEquals("text", message.getComment());
+        Assertions.assertEquals("0x32eaae0fcbf6a342aec65936ea208653", message.getHeader().getMessageId());
+        Assertions.assertEquals("2", message.getResponseCode());
+    }
+
+    @Test
+    public void fromJsonInvalidTest() {
+        Assertions.assertThrows(VaspException.class, () -> VaspMessage.fromJson("{\"comment\":\"text\"}"));
+        Assertions.assertThrows(VaspException.class, () -> VaspMessage.fromJson("{\"msg\":{\"msgid\":\"0x01\"}}"));
+        Assertions.assertThrows(VaspException.class, () -> VaspMessage.fromJson("[]"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> VaspMessage.fromJson("{\"msg\":{\"type\":\"-1\"}}"));
+    }
+
 }
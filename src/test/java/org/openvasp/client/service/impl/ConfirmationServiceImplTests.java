@@ -1,23 +1,41 @@
 package org.openvasp.client.service.impl;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.openvasp.client.api.whisper.model.ShhMessage;
+import org.openvasp.client.common.ExceptionHandler;
+import org.openvasp.client.common.VaspException;
+import org.openvasp.client.common.VaspValidationException;
 import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.model.*;
+import org.openvasp.client.service.ConfirmationMetrics;
 import org.openvasp.client.service.ContractService;
+import org.openvasp.client.service.TopicEvent;
+import org.openvasp.client.service.TopicListener;
 import org.openvasp.client.service.VaspIdentityService;
 import org.openvasp.client.service.WhisperService;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class ConfirmationServiceImplTests {
 
+    @Mock
+    private ExceptionHandler exceptionHandler;
     @Mock
     private WhisperService whisperService;
     @Mock
@@ -50,14 +68,133 @@ public class ConfirmationServiceImplTests {
         header.setMessageId("0x89a4de97f11aa156372a4f39cdadf194");
         vaspMessage.setHeader(header);
 
-        confirmationService = new ConfirmationServiceImpl(vaspConfig, whisperService, contractService, vaspIdentityService);
+        confirmationService = new ConfirmationServiceImpl(vaspConfig, exceptionHandler, whisperService, contractService, vaspIdentityService);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        confirmationService.close();
     }
 
     @Test
     public void registerForConfirmationTest() {
-        when(whisperService.addTopicListener(any(), any(), any(), any())).thenReturn(1L);
+        Topic confirmationTopic = vaspMessage.getConfirmationTopic();
+        when(whisperService.addTopicListeners(any(), any(), any(), any())).thenReturn(Map.of(confirmationTopic, 1L));
+
+        // The registration returns once the confirmation topic is listened to
+        confirmationService.registerForConfirmation(vaspMessage);
+        verify(whisperService).addTopicListeners(
+                eq(List.of(confirmationTopic)),
+                eq(EncryptionType.ASSYMETRIC),
+                eq(vaspConfig.getHandshakePrivateKey()),
+                any());
+
+        // The topic is listened to already
+        confirmationService.registerForConfirmation(vaspMessage);
+        verify(whisperService, times(1)).addTopicListeners(any(), any(), any(), any());
+    }
+
+    @Test
+    public void registerForConfirmationRetryTest() {
+        Topic confirmationTopic = vaspMessage.getConfirmationTopic();
+        when(whisperService.addTopicListeners(any(), any(), any(), any()))
+                .thenThrow(new VaspException("Whisper node is not available"))
+                .thenReturn(Map.of(confirmationTopic, 1L));
+
+        // The failed topic is added again after a delay, the registration waits for it
+        long start = System.nanoTime();
+        confirmationService.registerForConfirmation(vaspMessage);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+        verify(whisperService, times(2)).addTopicListeners(
+                eq(List.of(confirmationTopic)),
+                eq(EncryptionType.ASSYMETRIC),
+                eq(vaspConfig.getHandshakePrivateKey()),
+                any());
+    }
+
+    @Test
+    public void confirmationTest() {
+        Topic confirmationTopic = vaspMessage.getConfirmationTopic();
+        CompletableFuture<TopicListener<ShhMessage>> listener = new CompletableFuture<>();
+        when(whisperService.addTopicListeners(any(), any(), any(), any())).thenAnswer(invocation -> {
+            listener.complete(invocation.getArgument(3));
+            return Map.of(confirmationTopic, 1L);
+        });
+
+        List<VaspMessage> confirmed = new ArrayList<>();
+        confirmationService.setConfirmationHandler(confirmed::add);
         confirmationService.registerForConfirmation(vaspMessage);
-        verify(whisperService).addTopicListener(any(), any(), any(), any());
+
+        // The acknowledgment is matched to the message by its topic
+        TopicEvent<ShhMessage> acknowledgment = new TopicEvent<>(confirmationTopic, new ShhMessage());
+        listener.join().onTopicEvent(new TopicEvent<>(new Topic("0x00000001"), new ShhMessage()));
+        assertThat(confirmed).isEmpty();
+        listener.join().onTopicEvent(acknowledgment);
+        assertThat(confirmed).containsExactly(vaspMessage);
+        verify(whisperService, timeout(5000)).removeTopicListeners(Map.of(confirmationTopic, 1L));
+
+        // The repeated acknowledgment is ignored
+        listener.join().onTopicEvent(acknowledgment);
+        assertThat(confirmed).containsExactly(vaspMessage);
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        vaspConfig.setConfirmationTimeout(600L);
+        vaspConfig.setConfirmationRetransmissions(2);
+        confirmationService = new ConfirmationServiceImpl(vaspConfig, exceptionHandler, whisperService, contractService, vaspIdentityService);
+
+        Topic confirmationTopic = vaspMessage.getConfirmationTopic();
+        CompletableFuture<TopicListener<ShhMessage>> listener = new CompletableFuture<>();
+        when(whisperService.addTopicListeners(any(), any(), any(), any())).thenAnswer(invocation -> {
+            listener.complete(invocation.getArgument(3));
+            return Map.of(confirmationTopic, 1L);
+        });
+
+        AtomicInteger retransmissions = new AtomicInteger();
+        CompletableFuture<VaspMessage> timedOut = new CompletableFuture<>();
+        List<VaspMessage> confirmed = new ArrayList<>();
+        confirmationService.setConfirmationHandler(confirmed::add);
+        List<String> handlerThreads = new CopyOnWriteArrayList<>();
+        confirmationService.setConfirmationTimeoutHandler(message -> {
+            handlerThreads.add(Thread.currentThread().getName());
+            timedOut.complete(message);
+        });
+        confirmationService.registerForConfirmation(vaspMessage, retransmissions::incrementAndGet);
+
+        // The message is retransmitted the configured number of times, then the topic is released
+        assertThat(timedOut.get(5, TimeUnit.SECONDS)).isEqualTo(vaspMessage);
+        // The handler does not run on the timer thread
+        assertThat(handlerThreads).allMatch(name -> name.startsWith("ConfirmationExpiration-"));
+        assertThat(retransmissions).hasValue(2);
+        verify(whisperService, timeout(5000)).removeTopicListeners(Map.of(confirmationTopic, 1L));
+
+        // The late acknowledgment is ignored
+        listener.join().onTopicEvent(new TopicEvent<>(confirmationTopic, new ShhMessage()));
+        assertThat(confirmed).isEmpty();
+    }
+
+    @Test
+    public void confirmationStopsRetransmissionTest() throws InterruptedException {
+        vaspConfig.setConfirmationTimeout(600L);
+        confirmationService = new ConfirmationServiceImpl(vaspConfig, exceptionHandler, whisperService, contractService, vaspIdentityService);
+
+        Topic confirmationTopic = vaspMessage.getConfirmationTopic();
+        CompletableFuture<TopicListener<ShhMessage>> listener = new CompletableFuture<>();
+        when(whisperService.addTopicListeners(any(), any(), any(), any())).thenAnswer(invocation -> {
+            listener.complete(invocation.getArgument(3));
+            return Map.of(confirmationTopic, 1L);
+        });
+
+        AtomicInteger retransmissions = new AtomicInteger();
+        List<VaspMessage> timedOut = new CopyOnWriteArrayList<>();
+        confirmationService.setConfirmationTimeoutHandler(timedOut::add);
+        confirmationService.registerForConfirmation(vaspMessage, retransmissions::incrementAndGet);
+
+        listener.join().onTopicEvent(new TopicEvent<>(confirmationTopic, new ShhMessage()));
+        Thread.sleep(1000);
+        assertThat(retransmissions).hasValue(0);
+        assertThat(timedOut).isEmpty();
     }
 
     @Test
@@ -65,19 +202,110 @@ public class ConfirmationServiceImplTests {
         EthAddr ethAddr = new EthAddr("0x6befaf0656b953b188a0ee3bf3db03d07dface61");
         when(vaspIdentityService.resolveSenderVaspId(vaspMessage)).thenReturn(Optional.of(ethAddr));
         when(contractService.getVaspContractInfo(ethAddr)).thenReturn(vaspContractInfo);
+        when(whisperService.sendAsync(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
         confirmationService.confirmReceipt(vaspMessage);
-        verify(whisperService).send(any(), any(), any(), any());
+        verify(whisperService, timeout(5000)).sendAsync(
+                vaspMessage.getConfirmationTopic(),
+                EncryptionType.ASSYMETRIC,
+                vaspContractInfo.getHandshakeKey(),
+                "0x10");
+        verify(whisperService, never()).send(any(), any(), any(), any());
+    }
+
+    @Test
+    public void confirmReceiptKeyLookupTest() {
+        EthAddr ethAddr = new EthAddr("0x6befaf0656b953b188a0ee3bf3db03d07dface61");
+        when(vaspIdentityService.resolveSenderVaspId(vaspMessage))
+                .thenReturn(Optional.of(ethAddr))
+                .thenReturn(Optional.empty());
+        when(contractService.getVaspContractInfo(ethAddr)).thenReturn(vaspContractInfo);
+        when(whisperService.sendAsync(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // The sender is resolved at once, e.g. before the session of the last message is removed
+        confirmationService.confirmReceipt(vaspMessage);
+        verify(contractService).getVaspContractInfo(ethAddr);
+        verify(whisperService, timeout(5000)).sendAsync(
+                vaspMessage.getConfirmationTopic(),
+                EncryptionType.ASSYMETRIC,
+                vaspContractInfo.getHandshakeKey(),
+                "0x10");
+
+        // The receipt of an unresolved sender is not queued, the error is reported
+        confirmationService.confirmReceipt(vaspMessage);
+        verify(exceptionHandler).processException(any(VaspValidationException.class));
+        ConfirmationMetrics metrics = confirmationService.getConfirmationMetrics();
+        assertThat(metrics.getQueued()).isZero();
+        assertThat(metrics.getFailed()).isEqualTo(1);
+    }
+
+    @Test
+    public void confirmReceiptBatchTest() throws Exception {
+        vaspConfig.setConfirmationBatchWindow(200L);
+        confirmationService = new ConfirmationServiceImpl(vaspConfig, exceptionHandler, whisperService, contractService, vaspIdentityService);
+
+        EthAddr ethAddr = new EthAddr("0x6befaf0656b953b188a0ee3bf3db03d07dface61");
+        when(vaspIdentityService.resolveSenderVaspId(any())).thenReturn(Optional.of(ethAddr));
+        when(contractService.getVaspContractInfo(ethAddr)).thenReturn(vaspContractInfo);
+        CompletableFuture<Void> posted = new CompletableFuture<>();
+        when(whisperService.sendAsync(any(), any(), any(), any())).thenReturn(posted);
+
+        VaspMessage otherMessage = new TransferConfirmation();
+        VaspMessage.Header header = new VaspMessage.Header();
+        header.setMessageId("0x89a4de97f11aa156372a4f39cdadf195");
+        otherMessage.setHeader(header);
+
+        // The same message received twice is confirmed once
+        confirmationService.confirmReceipt(vaspMessage);
+        confirmationService.confirmReceipt(otherMessage);
+        confirmationService.confirmReceipt(vaspMessage);
+        assertThat(confirmationService.getConfirmationMetrics().getQueued()).isEqualTo(3);
+
+        verify(whisperService, timeout(5000)).sendAsync(
+                eq(vaspMessage.getConfirmationTopic()), any(), any(), any());
+        verify(whisperService, timeout(5000)).sendAsync(
+                eq(otherMessage.getConfirmationTopic()), any(), any(), any());
+        verify(contractService, times(3)).getVaspContractInfo(ethAddr);
+
+        posted.complete(null);
+        ConfirmationMetrics metrics = confirmationService.getConfirmationMetrics();
+        assertThat(metrics.getQueued()).isZero();
+        assertThat(metrics.getSent()).isEqualTo(3);
+        assertThat(metrics.getFailed()).isZero();
+        // The first receipt waits for the whole window, the later ones for its rest
+        assertThat(metrics.getMaxLatencyMs()).isGreaterThanOrEqualTo(200);
+        assertThat(metrics.getMeanLatencyMs()).isPositive().isLessThanOrEqualTo(metrics.getMaxLatencyMs());
     }
 
     @Test
     public void confirmationDisabledTest() {
         vaspConfig.setAcknowledgmentEnabled(false);
-        confirmationService = new ConfirmationServiceImpl(vaspConfig, whisperService, contractService, vaspIdentityService);
+        confirmationService = new ConfirmationServiceImpl(vaspConfig, exceptionHandler, whisperService, contractService, vaspIdentityService);
 
         confirmationService.confirmReceipt(vaspMessage);
         verify(whisperService, never()).send(any(), any(), any(), any());
 
         confirmationService.registerForConfirmation(vaspMessage);
-        verify(whisperService, never()).addTopicListener(any(), any(), any(), any());
+        verify(whisperService, never()).addTopicListeners(any(), any(), any(), any());
     }
+
+    @Test
+    public void closeTest() throws InterruptedException {
+        vaspConfig.setConfirmationTimeout(300L);
+        confirmationService = new ConfirmationServiceImpl(vaspConfig, exceptionHandler, whisperService, contractService, vaspIdentityService);
+
+        Topic confirmationTopic = vaspMessage.getConfirmationTopic();
+        when(whisperService.addTopicListeners(any(), any(), any(), any())).thenReturn(Map.of(confirmationTopic, 1L));
+
+        AtomicInteger retransmissions = new AtomicInteger();
+        List<VaspMessage> timedOut = new CopyOnWriteArrayList<>();
+        confirmationService.setConfirmationTimeoutHandler(timedOut::add);
+        confirmationService.registerForConfirmation(vaspMessage, retransmissions::incrementAndGet);
+
+        // The waiting message is neither retransmitted nor timed out after the service is closed
+        confirmationService.close();
+        Thread.sleep(600);
+        assertThat(retransmissions).hasValue(0);
+        assertThat(timedOut).isEmpty();
+    }
+
 }
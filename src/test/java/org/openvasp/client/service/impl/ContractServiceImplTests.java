@@ -0,0 +1,296 @@
+package org.openvasp.client.service.impl;
+
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openvasp.client.common.VaspException;
+import org.openvasp.client.config.VaspConfig;
+import org.openvasp.client.model.Country;
+import org.openvasp.client.model.EthAddr;
+import org.openvasp.client.model.VaspCode;
+import org.openvasp.client.model.VaspContractInfo;
+import org.openvasp.client.service.EnsService;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Bytes4;
+import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Olexandr_Bilovol@epam.com
+ */
+@ExtendWith(MockitoExtension.class)
+public class ContractServiceImplTests {
+
+    private static final EthAddr CONTRACT_ADDRESS = new EthAddr("0x6befaf0656b953b188a0ee3bf3db03d07dface61");
+    private static final String OWNER_ADDRESS = "0x08fda931d64b17c3acffb35c1b3902e0bbb4ee5c";
+    private static final String BLOCK_NUMBER = "0x7a120";
+
+    @Mock
+    private Web3jService web3jService;
+
+    @Mock
+    private EnsService ensService;
+
+    private Web3j web3j;
+    private ContractServiceImpl contractService;
+
+    private final Map<String, List<Type>> contractState = new HashMap<>();
+
+    @BeforeEach
+    public void init() {
+        web3j = Web3j.build(web3jService);
+        contractService = new ContractServiceImpl(new VaspConfig(), web3j, ensService);
+
+        contractState.put("postalAddress", List.of(
+                new Utf8String("Some StreetName"),
+                new Utf8String("64"),
+                new Utf8String("Some AddressLine"),
+                new Utf8String("310031"),
+                new Utf8String("TownN"),
+                new Utf8String("DE")));
+        contractState.put("name", List.of(new Utf8String("TestVasp")));
+        contractState.put("code", List.of(new Bytes4(new byte[]{0x7d, (byte) 0xfa, (byte) 0xce, 0x61})));
+        contractState.put("channels", List.of(new DynamicArray<>(Uint8.class, List.of(new Uint8(1), new Uint8(2)))));
+        contractState.put("handshakeKey", List.of(new Utf8String("0xhandshake")));
+        contractState.put("signingKey", List.of(new Utf8String("0xsigning")));
+        contractState.put("owner", List.of(new Address(OWNER_ADDRESS)));
+        contractState.put("email", List.of(new Utf8String("info@vasp.com")));
+        contractState.put("website", List.of(new Utf8String("www.vasp.com")));
+    }
+
+    @AfterEach
+    public void shutdown() {
+        web3j.shutdown();
+    }
+
+    @Test
+    public void loadContractInfoTest() {
+        stubBlockNumber();
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> batchResponse(invocation.getArgument(0), false));
+
+        val contractInfo = contractService.getVaspContractInfo(CONTRACT_ADDRESS);
+        assertThat(contractInfo.getName()).isEqualTo("TestVasp");
+        assertThat(contractInfo.getVaspCode()).isEqualTo(new VaspCode("7dface61"));
+        assertThat(contractInfo.getChannels()).containsExactly(1L, 2L);
+        assertThat(contractInfo.getHandshakeKey()).isEqualTo("0xhandshake");
+        assertThat(contractInfo.getSigningKey()).isEqualTo("0xsigning");
+        assertThat(contractInfo.getOwnerAddress()).isEqualTo(OWNER_ADDRESS);
+        assertThat(contractInfo.getEmail()).isEqualTo("info@vasp.com");
+        assertThat(contractInfo.getWebsite()).isEqualTo("www.vasp.com");
+        assertThat(contractInfo.getAddress().getStreet()).isEqualTo("Some StreetName");
+        assertThat(contractInfo.getAddress().getTown()).isEqualTo("TownN");
+        assertThat(contractInfo.getAddress().getCountry()).isEqualTo(Country.ALL.get("DE"));
+
+        // The cached info does not need any requests
+        assertThat(contractService.getVaspContractInfo(CONTRACT_ADDRESS)).isSameAs(contractInfo);
+        verify(web3jService, times(1)).sendAsync(any(), eq(EthBlockNumber.class));
+        verify(web3jService, times(1)).sendBatchAsync(any());
+    }
+
+    @Test
+    public void batchResponseOrderTest() {
+        stubBlockNumber();
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> batchResponse(invocation.getArgument(0), true));
+
+        val contractInfo = contractService.getVaspContractInfo(CONTRACT_ADDRESS);
+        assertThat(contractInfo.getName()).isEqualTo("TestVasp");
+        assertThat(contractInfo.getSigningKey()).isEqualTo("0xsigning");
+        assertThat(contractInfo.getWebsite()).isEqualTo("www.vasp.com");
+    }
+
+    @Test
+    public void callErrorTest() {
+        stubBlockNumber();
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> {
+            BatchRequest batch = invocation.getArgument(0);
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ?> request : batch.getRequests()) {
+                EthCall response = new EthCall();
+                response.setId(request.getId());
+                response.setError(new Response.Error(-32000, "header not found"));
+                responses.add(response);
+            }
+            return CompletableFuture.completedFuture(new BatchResponse(batch.getRequests(), responses));
+        });
+
+        assertThatThrownBy(() -> contractService.getVaspContractInfo(CONTRACT_ADDRESS))
+                .isInstanceOf(VaspException.class)
+                .hasMessageContaining("header not found");
+    }
+
+    @Test
+    public void noContractTest() {
+        stubBlockNumber();
+        contractState.clear();
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> batchResponse(invocation.getArgument(0), false));
+
+        assertThatThrownBy(() -> contractService.getVaspContractInfo(CONTRACT_ADDRESS))
+                .isInstanceOf(VaspException.class)
+                .hasMessageContaining("No VASP contract");
+    }
+
+    @Test
+    public void coalescedLoadTest() {
+        val blockNumber = new CompletableFuture<EthBlockNumber>();
+        when(web3jService.sendAsync(any(), eq(EthBlockNumber.class))).thenReturn(blockNumber);
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> batchResponse(invocation.getArgument(0), false));
+
+        val results = new ArrayList<CompletableFuture<VaspContractInfo>>();
+        for (int i = 0; i < 10; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> contractService.getVaspContractInfo(CONTRACT_ADDRESS)));
+        }
+
+        verify(web3jService, timeout(5000)).sendAsync(any(), eq(EthBlockNumber.class));
+        val response = new EthBlockNumber();
+        response.setResult(BLOCK_NUMBER);
+        blockNumber.complete(response);
+
+        val contractInfo = results.get(0).join();
+        for (val result : results) {
+            assertThat(result.join()).isSameAs(contractInfo);
+        }
+        verify(web3jService, times(1)).sendAsync(any(), eq(EthBlockNumber.class));
+        verify(web3jService, times(1)).sendBatchAsync(any());
+    }
+
+    @Test
+    public void failureNotCachedTest() {
+        val failure = new CompletableFuture<EthBlockNumber>();
+        failure.completeExceptionally(new IOException("Connection refused"));
+        val blockNumber = new EthBlockNumber();
+        blockNumber.setResult(BLOCK_NUMBER);
+        when(web3jService.sendAsync(any(), eq(EthBlockNumber.class)))
+                .thenReturn(failure)
+                .thenReturn(CompletableFuture.completedFuture(blockNumber));
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> batchResponse(invocation.getArgument(0), false));
+
+        assertThatThrownBy(() -> contractService.getVaspContractInfo(CONTRACT_ADDRESS))
+                .isInstanceOf(IOException.class);
+        assertThat(contractService.getVaspContractInfo(CONTRACT_ADDRESS).getName()).isEqualTo("TestVasp");
+    }
+
+    @Test
+    public void invalidateTest() {
+        stubBlockNumber();
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> batchResponse(invocation.getArgument(0), false));
+
+        assertThat(contractService.getVaspContractInfo(CONTRACT_ADDRESS).getSigningKey()).isEqualTo("0xsigning");
+        contractState.put("signingKey", List.of(new Utf8String("0xrotated")));
+        assertThat(contractService.getVaspContractInfo(CONTRACT_ADDRESS).getSigningKey()).isEqualTo("0xsigning");
+
+        contractService.invalidate(CONTRACT_ADDRESS);
+        assertThat(contractService.getVaspContractInfo(CONTRACT_ADDRESS).getSigningKey()).isEqualTo("0xrotated");
+        verify(web3jService, times(2)).sendBatchAsync(any());
+    }
+
+    @Test
+    public void warmStartTest(@TempDir final Path cacheDir) {
+        stubBlockNumber();
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> batchResponse(invocation.getArgument(0), false));
+        val vaspConfig = new VaspConfig();
+        vaspConfig.setContractCacheDir(cacheDir.toString());
+
+        val contractInfo = new ContractServiceImpl(vaspConfig, web3j, ensService).getVaspContractInfo(CONTRACT_ADDRESS);
+        verify(web3jService, times(1)).sendBatchAsync(any());
+
+        // The restarted service serves the persisted info at once and verifies it in the background
+        contractState.put("signingKey", List.of(new Utf8String("0xrotated")));
+        val restartedService = new ContractServiceImpl(vaspConfig, web3j, ensService);
+        val persistedInfo = restartedService.getVaspContractInfo(CONTRACT_ADDRESS);
+        assertThat(persistedInfo).isNotSameAs(contractInfo);
+        assertThat(persistedInfo.getName()).isEqualTo("TestVasp");
+        assertThat(persistedInfo.getSigningKey()).isEqualTo("0xsigning");
+        assertThat(persistedInfo.getChannels()).containsExactly(1L, 2L);
+
+        verify(web3jService, timeout(5000).times(2)).sendBatchAsync(any());
+        assertThat(restartedService.getVaspContractInfo(CONTRACT_ADDRESS).getSigningKey()).isEqualTo("0xrotated");
+        assertThat(new ContractServiceImpl(vaspConfig, web3j, ensService).getVaspContractInfo(CONTRACT_ADDRESS)
+                .getSigningKey()).isEqualTo("0xrotated");
+    }
+
+    @Test
+    public void invalidatedColdStartTest(@TempDir final Path cacheDir) {
+        stubBlockNumber();
+        when(web3jService.sendBatchAsync(any())).thenAnswer(invocation -> batchResponse(invocation.getArgument(0), false));
+        val vaspConfig = new VaspConfig();
+        vaspConfig.setContractCacheDir(cacheDir.toString());
+
+        val service = new ContractServiceImpl(vaspConfig, web3j, ensService);
+        service.getVaspContractInfo(CONTRACT_ADDRESS);
+        service.invalidate(CONTRACT_ADDRESS);
+
+        // The invalidated contract is not preloaded, the restarted service loads it from the node
+        contractState.put("signingKey", List.of(new Utf8String("0xrotated")));
+        assertThat(new ContractServiceImpl(vaspConfig, web3j, ensService).getVaspContractInfo(CONTRACT_ADDRESS)
+                .getSigningKey()).isEqualTo("0xrotated");
+        verify(web3jService, times(2)).sendBatchAsync(any());
+    }
+
+    private void stubBlockNumber() {
+        val blockNumber = new EthBlockNumber();
+        blockNumber.setResult(BLOCK_NUMBER);
+        when(web3jService.sendAsync(any(), eq(EthBlockNumber.class)))
+                .thenReturn(CompletableFuture.completedFuture(blockNumber));
+    }
+
+    private CompletableFuture<BatchResponse> batchResponse(final BatchRequest batch, final boolean reverse) {
+        List<Response<?>> responses = new ArrayList<>();
+        for (Request<?, ?> request : batch.getRequests()) {
+            assertThat(request.getMethod()).isEqualTo("eth_call");
+            // All the calls are pinned to the same block
+            assertThat(((DefaultBlockParameter) request.getParams().get(1)).getValue()).isEqualTo(BLOCK_NUMBER);
+
+            Transaction transaction = (Transaction) request.getParams().get(0);
+            assertThat(transaction.getTo()).isEqualTo(CONTRACT_ADDRESS.getData());
+
+            EthCall response = new EthCall();
+            response.setId(request.getId());
+            response.setResult("0x");
+            contractState.forEach((name, values) -> {
+                if (transaction.getData().equals(FunctionEncoder.encode(new Function(name, List.of(), List.of())))) {
+                    response.setResult("0x" + FunctionEncoder.encodeConstructor(values));
+                }
+            });
+            responses.add(response);
+        }
+
+        if (reverse) {
+            Collections.reverse(responses);
+        }
+        return CompletableFuture.completedFuture(new BatchResponse(batch.getRequests(), responses));
+    }
+
+}
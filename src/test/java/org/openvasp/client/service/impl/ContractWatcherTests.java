@@ -0,0 +1,248 @@
+package org.openvasp.client.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openvasp.client.common.RefreshingCache;
+import org.openvasp.client.common.VaspException;
+import org.openvasp.client.contract.VASP;
+import org.openvasp.client.model.EthAddr;
+import org.openvasp.client.model.VaspContractInfo;
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Olexandr_Bilovol@epam.com
+ */
+@ExtendWith(MockitoExtension.class)
+public class ContractWatcherTests {
+
+    private static final EthAddr CONTRACT_ADDRESS = new EthAddr("0x6befaf0656b953b188a0ee3bf3db03d07dface61");
+
+    @Mock
+    private Web3jService web3jService;
+
+    private Web3j web3j;
+    private ContractWatcher watcher;
+    private RefreshingCache<EthAddr, VaspContractInfo> cache;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Map<String, String> contractKeys = new HashMap<>();
+
+    @BeforeEach
+    public void init() {
+        web3j = Web3j.build(web3jService);
+        cache = new RefreshingCache<>(10, 60_000, 60_000, address -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(contractInfo());
+        });
+        cache.put(CONTRACT_ADDRESS, contractInfo());
+        watcher = new ContractWatcher(web3j, cache);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        watcher.close();
+        web3j.shutdown();
+    }
+
+    @Test
+    public void unchangedTest() throws IOException {
+        stubBlockNumbers("0x64", "0x64", "0x65");
+        when(web3jService.sendBatch(any())).thenAnswer(invocation -> blocksResponse(
+                invocation.getArgument(0),
+                Map.of("0x65", List.of("0x0000000000000000000000000000000000000001"))));
+        when(web3jService.send(any(), eq(EthLog.class))).thenReturn(noLogs());
+
+        // The first check only remembers the block
+        assertThat(watcher.check()).isEmpty();
+        // No new block, so nothing is requested but the block number
+        assertThat(watcher.check()).isEmpty();
+        verify(web3jService, never()).sendBatch(any());
+        verify(web3jService, never()).send(any(), eq(EthLog.class));
+
+        // The new block calls another contract only
+        assertThat(watcher.check()).isEmpty();
+        verify(web3jService, times(1)).sendBatch(any());
+        assertThat(loads.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void contractCalledTest() throws IOException {
+        stubBlockNumbers("0x64", "0x66");
+        List<String> requestedBlocks = new ArrayList<>();
+        when(web3jService.sendBatch(any())).thenAnswer(invocation -> {
+            BatchRequest batch = invocation.getArgument(0);
+            batch.getRequests().forEach(request -> requestedBlocks.add((String) request.getParams().get(0)));
+            // The node may return the checksum address
+            return blocksResponse(batch, Map.of(
+                    "0x65", List.of(),
+                    "0x66", List.of(CONTRACT_ADDRESS.getData().toUpperCase().replace("0X", "0x"))));
+        });
+        when(web3jService.send(any(), eq(EthLog.class))).thenReturn(noLogs());
+
+        assertThat(watcher.check()).isEmpty();
+        contractKeys.put("signingKey", "0xrotated");
+        assertThat(watcher.check()).containsExactly(CONTRACT_ADDRESS);
+
+        // One request per new block
+        assertThat(requestedBlocks).containsExactly("0x65", "0x66");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getIfPresent(CONTRACT_ADDRESS).map(VaspContractInfo::getSigningKey)).contains("0xrotated");
+    }
+
+    @Test
+    public void blockNotAvailableTest() throws IOException {
+        stubBlockNumbers("0x64", "0x65", "0x65");
+        when(web3jService.sendBatch(any()))
+                .thenAnswer(invocation -> blocksResponse(invocation.getArgument(0), Map.of()))
+                .thenAnswer(invocation -> blocksResponse(
+                        invocation.getArgument(0),
+                        Map.of("0x65", List.of(CONTRACT_ADDRESS.getData()))));
+        when(web3jService.send(any(), eq(EthLog.class))).thenReturn(noLogs());
+
+        assertThat(watcher.check()).isEmpty();
+        assertThatThrownBy(() -> watcher.check()).isInstanceOf(VaspException.class);
+        // The block is checked again
+        assertThat(watcher.check()).containsExactly(CONTRACT_ADDRESS);
+    }
+
+    @Test
+    public void catchUpTest() throws IOException {
+        stubBlockNumbers("0x64", "0x" + Long.toHexString(0x64 + ContractWatcher.MAX_CATCH_UP_BLOCKS + 1));
+
+        // After too many blocks all the cached contracts are reloaded, without fetching the blocks
+        assertThat(watcher.check()).isEmpty();
+        assertThat(watcher.check()).containsExactly(CONTRACT_ADDRESS);
+        verify(web3jService, never()).sendBatch(any());
+        verify(web3jService, never()).send(any(), eq(EthLog.class));
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void reloadInPlaceTest() throws IOException {
+        CompletableFuture<VaspContractInfo> reload = new CompletableFuture<>();
+        cache = new RefreshingCache<>(10, 60_000, 60_000, address -> reload);
+        cache.put(CONTRACT_ADDRESS, contractInfo());
+        watcher.close();
+        watcher = new ContractWatcher(web3j, cache);
+        stubBlockNumbers("0x64", "0x" + Long.toHexString(0x64 + ContractWatcher.MAX_CATCH_UP_BLOCKS + 1));
+
+        assertThat(watcher.check()).isEmpty();
+        assertThat(watcher.check()).containsExactly(CONTRACT_ADDRESS);
+
+        // The cached contract is served until the reload completes
+        assertThat(cache.getIfPresent(CONTRACT_ADDRESS).map(VaspContractInfo::getSigningKey)).contains("0xsigning");
+        contractKeys.put("signingKey", "0xrotated");
+        reload.complete(contractInfo());
+        assertThat(cache.getIfPresent(CONTRACT_ADDRESS).map(VaspContractInfo::getSigningKey)).contains("0xrotated");
+    }
+
+    @Test
+    public void ownershipTransferredTest() throws IOException {
+        stubBlockNumbers("0x64", "0x65");
+        when(web3jService.sendBatch(any())).thenAnswer(invocation -> blocksResponse(
+                invocation.getArgument(0),
+                Map.of("0x65", List.of())));
+        when(web3jService.send(any(), eq(EthLog.class))).thenAnswer(invocation -> {
+            Request<?, ?> request = invocation.getArgument(0);
+            EthFilter filter = (EthFilter) request.getParams().get(0);
+            assertThat(filter.getAddress()).containsExactly(CONTRACT_ADDRESS.getData());
+            assertThat(filter.getFromBlock().getValue()).isEqualTo("0x65");
+            assertThat(filter.getToBlock().getValue()).isEqualTo("0x65");
+
+            // The node may return the checksum address
+            EthLog.LogObject log = new EthLog.LogObject();
+            log.setAddress(CONTRACT_ADDRESS.getData().toUpperCase().replace("0X", "0x"));
+            log.setTopics(List.of(EventEncoder.encode(VASP.OWNERSHIPTRANSFERRED_EVENT)));
+            EthLog ethLog = new EthLog();
+            ethLog.setResult(List.of(log));
+            return ethLog;
+        });
+
+        assertThat(watcher.check()).isEmpty();
+        assertThat(watcher.check()).containsExactly(CONTRACT_ADDRESS);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    private void stubBlockNumbers(final String... blockNumbers) throws IOException {
+        List<EthBlockNumber> responses = new ArrayList<>();
+        for (String blockNumber : blockNumbers) {
+            EthBlockNumber response = new EthBlockNumber();
+            response.setResult(blockNumber);
+            responses.add(response);
+        }
+        when(web3jService.send(any(), eq(EthBlockNumber.class)))
+                .thenReturn(responses.get(0), responses.subList(1, responses.size()).toArray(new EthBlockNumber[0]));
+    }
+
+    private static EthLog noLogs() {
+        EthLog ethLog = new EthLog();
+        ethLog.setResult(List.of());
+        return ethLog;
+    }
+
+    // The blocks missing in the map are not available at the node
+    private static BatchResponse blocksResponse(final BatchRequest batch, final Map<String, List<String>> blocks) {
+        List<Response<?>> responses = new ArrayList<>();
+        for (Request<?, ?> request : batch.getRequests()) {
+            assertThat(request.getMethod()).isEqualTo("eth_getBlockByNumber");
+            assertThat(request.getParams().get(1)).isEqualTo(true);
+
+            EthBlock response = new EthBlock();
+            response.setId(request.getId());
+            String number = (String) request.getParams().get(0);
+            if (blocks.containsKey(number)) {
+                List<EthBlock.TransactionResult> transactions = new ArrayList<>();
+                for (String to : blocks.get(number)) {
+                    EthBlock.TransactionObject transaction = new EthBlock.TransactionObject();
+                    transaction.setTo(to);
+                    transactions.add(transaction);
+                }
+                EthBlock.Block block = new EthBlock.Block();
+                block.setNumber(number);
+                block.setTransactions(transactions);
+                response.setResult(block);
+            }
+            responses.add(response);
+        }
+        return new BatchResponse(batch.getRequests(), responses);
+    }
+
+    private VaspContractInfo contractInfo() {
+        return VaspContractInfo.builder()
+                .handshakeKey(contractKeys.getOrDefault("handshakeKey", "0xhandshake"))
+                .signingKey(contractKeys.getOrDefault("signingKey", "0xsigning"))
+                .build();
+    }
+
+}
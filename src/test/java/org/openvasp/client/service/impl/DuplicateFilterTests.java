@@ -0,0 +1,48 @@
+package org.openvasp.client.service.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DuplicateFilterTests {
+
+    @Test
+    public void windowTest() {
+        AtomicLong clock = new AtomicLong(0);
+        DuplicateFilter filter = new DuplicateFilter(1000, 100, clock::get);
+
+        Assertions.assertTrue(filter.add("id1"));
+        Assertions.assertFalse(filter.add("id1"));
+
+        // The ID is remembered at least for the window length
+        clock.set(999);
+        Assertions.assertTrue(filter.contains("id1"));
+        clock.set(1500);
+        Assertions.assertTrue(filter.contains("id1"));
+        Assertions.assertTrue(filter.add("id2"));
+
+        // ... and at most for twice of it
+        clock.set(2000);
+        Assertions.assertFalse(filter.contains("id1"));
+        Assertions.assertTrue(filter.contains("id2"));
+        clock.set(4000);
+        Assertions.assertFalse(filter.contains("id2"));
+        Assertions.assertEquals(0, filter.size());
+    }
+
+    @Test
+    public void maxSizeTest() {
+        DuplicateFilter filter = new DuplicateFilter(1000, 2, () -> 0L);
+
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(filter.add("id" + i));
+            Assertions.assertFalse(filter.add("id" + i));
+        }
+
+        Assertions.assertTrue(filter.size() <= 4);
+        Assertions.assertTrue(filter.contains("id9"));
+        Assertions.assertFalse(filter.contains("id0"));
+    }
+
+}
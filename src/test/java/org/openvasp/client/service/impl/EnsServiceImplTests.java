@@ -1,5 +1,6 @@
 package org.openvasp.client.service.impl;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -7,14 +8,21 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.openvasp.client.common.VaspException;
+import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.model.EthAddr;
 import org.web3j.ens.EnsResolutionException;
 import org.web3j.ens.EnsResolver;
 import org.web3j.protocol.Web3j;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,13 +39,18 @@ public class EnsServiceImplTests {
 
     @BeforeEach
     public void init() throws NoSuchFieldException, IllegalAccessException {
-        ensService = new EnsServiceImpl(web3j);
+        ensService = new EnsServiceImpl(new VaspConfig(), web3j);
         ethAddress = "0x6befaf0656b953b188a0ee3bf3db03d07dface61";
         Field field = EnsServiceImpl.class.getDeclaredField("ensResolver");
         field.setAccessible(true);
         field.set(ensService, ensResolver);
     }
 
+    @AfterEach
+    public void shutdown() {
+        ensService.close();
+    }
+
     @Test
     public void resolveContractAddressTest() {
         when(ensResolver.resolve(any())).thenReturn(ethAddress);
@@ -49,4 +62,42 @@ public class EnsServiceImplTests {
         when(ensResolver.resolve(any())).thenThrow(EnsResolutionException.class);
         Assertions.assertThrows(VaspException.class, () -> ensService.resolveContractAddress(ethAddress));
     }
+
+    @Test
+    public void resolveContractAddressAsyncTest() throws Exception {
+        when(ensResolver.resolve(any()))
+                .thenThrow(EnsResolutionException.class)
+                .thenThrow(EnsResolutionException.class)
+                .thenReturn(ethAddress);
+
+        CompletableFuture<EthAddr> result = ensService.resolveContractAddressAsync(ethAddress);
+        Assertions.assertEquals(new EthAddr(ethAddress), result.get(10, TimeUnit.SECONDS));
+        verify(ensResolver, times(3)).resolve(any());
+    }
+
+    @Test
+    public void negativeCacheTest() {
+        when(ensResolver.resolve(any())).thenThrow(EnsResolutionException.class);
+
+        CompletableFuture<EthAddr> result = ensService.resolveContractAddressAsync(ethAddress);
+        ExecutionException ex = Assertions.assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(ex.getCause() instanceof VaspException);
+        verify(ensResolver, times(4)).resolve(any());
+
+        // The recent failure is reported at once, without new attempts
+        Assertions.assertThrows(VaspException.class, () -> ensService.resolveContractAddress(ethAddress));
+        verify(ensResolver, times(4)).resolve(any());
+    }
+
+    @Test
+    public void closeTest() {
+        ensService.close();
+
+        // No resolution is started after the service is closed
+        CompletableFuture<EthAddr> result = ensService.resolveContractAddressAsync(ethAddress);
+        ExecutionException ex = Assertions.assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(ex.getCause() instanceof VaspException);
+        verify(ensResolver, never()).resolve(any());
+    }
+
 }
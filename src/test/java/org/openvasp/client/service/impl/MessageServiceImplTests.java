@@ -1,11 +1,15 @@
 package org.openvasp.client.service.impl;
 
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.openvasp.client.api.whisper.model.ShhMessage;
 import org.openvasp.client.common.ExceptionHandler;
+import org.openvasp.client.common.VaspValidationException;
 import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.model.EncryptionType;
 import org.openvasp.client.model.SessionRequest;
@@ -13,10 +17,19 @@ import org.openvasp.client.model.Topic;
 import org.openvasp.client.model.VaspMessage;
 import org.openvasp.client.service.ConfirmationService;
 import org.openvasp.client.service.SignService;
+import org.openvasp.client.service.TopicEvent;
+import org.openvasp.client.service.TopicListener;
 import org.openvasp.client.service.WhisperService;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class MessageServiceImplTests {
@@ -56,7 +69,143 @@ public class MessageServiceImplTests {
         Topic topic = new Topic("0x12345678");
         String keyId = "keyId";
         VaspMessage vaspMessage = new SessionRequest();
+        when(signService.prepareSigner(any())).thenReturn(message -> "payload");
+
+        messageService.send(topic, EncryptionType.SYMMETRIC, keyId, vaspMessage);
         messageService.send(topic, EncryptionType.SYMMETRIC, keyId, vaspMessage);
-        verify(whisperService).send(any(), any(), any(), any());
+        verify(whisperService, times(2)).send(topic, EncryptionType.SYMMETRIC, keyId, "payload");
+        // The signing key is prepared once
+        verify(signService, times(1)).prepareSigner(any());
+    }
+
+    @Test
+    public void sendAsyncTest() {
+        Topic topic = new Topic("0x12345678");
+        String keyId = "keyId";
+        VaspMessage vaspMessage = new SessionRequest();
+        when(whisperService.sendAsync(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(signService.prepareSigner(any())).thenReturn(message -> "payload");
+
+        messageService.sendAsync(topic, EncryptionType.SYMMETRIC, keyId, vaspMessage).join();
+        ArgumentCaptor<Runnable> retransmission = ArgumentCaptor.forClass(Runnable.class);
+        verify(confirmationService).registerForConfirmation(eq(vaspMessage), retransmission.capture());
+        verify(whisperService, never()).send(any(), any(), any(), any());
+
+        // The same signed payload is retransmitted
+        retransmission.getValue().run();
+        verify(whisperService, times(2)).sendAsync(topic, EncryptionType.SYMMETRIC, keyId, "payload");
     }
+
+    @Test
+    public void duplicateMessageTest() {
+        Topic topic = new Topic("0x12345678");
+        List<VaspMessage> received = new ArrayList<>();
+        messageService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", event -> received.add(event.getPayload()));
+
+        ArgumentCaptor<TopicListener<ShhMessage>> listenerCaptor = ArgumentCaptor.forClass(TopicListener.class);
+        verify(whisperService).addTopicListener(any(), any(), any(), listenerCaptor.capture());
+        TopicListener<ShhMessage> whisperListener = listenerCaptor.getValue();
+
+        VaspMessage vaspMessage = new SessionRequest();
+        vaspMessage.getHeader().setMessageId("0x00000000000000000000000000000001");
+        when(signService.extractSignedMessages(any())).thenAnswer(invocation -> {
+            List<String> payloads = invocation.getArgument(0);
+            return payloads.stream()
+                    .map(payload -> SignService.ExtractedMessage.of(vaspMessage))
+                    .collect(Collectors.toList());
+        });
+
+        // The same envelope twice is confirmed once
+        whisperListener.onTopicEvent(new TopicEvent<>(topic, newEnvelope(topic, "0x01")));
+        whisperListener.onTopicEvent(new TopicEvent<>(topic, newEnvelope(topic, "0x01")));
+        verify(confirmationService, times(1)).confirmReceipt(vaspMessage);
+
+        // The same message in another envelope is confirmed again
+        whisperListener.onTopicEvent(new TopicEvent<>(topic, newEnvelope(topic, "0x02")));
+        Assertions.assertEquals(1, received.size());
+        verify(confirmationService, times(2)).confirmReceipt(vaspMessage);
+
+        // The same message twice within a batch
+        whisperListener.onTopicEvents(Arrays.asList(
+                new TopicEvent<>(topic, newEnvelope(topic, "0x03")),
+                new TopicEvent<>(topic, newEnvelope(topic, "0x04"))));
+
+        Assertions.assertEquals(1, received.size());
+        verify(confirmationService, times(4)).confirmReceipt(vaspMessage);
+    }
+
+    @Test
+    public void retransmissionConfirmedAgainTest() {
+        Topic topic = new Topic("0x12345678");
+        String keyId = "keyId";
+        List<VaspMessage> received = new ArrayList<>();
+        messageService.addTopicListener(topic, EncryptionType.SYMMETRIC, keyId, event -> received.add(event.getPayload()));
+
+        ArgumentCaptor<TopicListener<ShhMessage>> listenerCaptor = ArgumentCaptor.forClass(TopicListener.class);
+        verify(whisperService).addTopicListener(any(), any(), any(), listenerCaptor.capture());
+        TopicListener<ShhMessage> whisperListener = listenerCaptor.getValue();
+
+        VaspMessage vaspMessage = new SessionRequest();
+        vaspMessage.getHeader().setMessageId("0x00000000000000000000000000000001");
+        when(signService.prepareSigner(any())).thenReturn(message -> "signed payload");
+        when(signService.extractSignedMessages(List.of("signed payload")))
+                .thenReturn(List.of(SignService.ExtractedMessage.of(vaspMessage)));
+        List<String> posted = new ArrayList<>();
+        when(whisperService.sendAsync(any(), any(), any(), any())).thenAnswer(invocation -> {
+            posted.add(invocation.getArgument(3));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        messageService.sendAsync(topic, EncryptionType.SYMMETRIC, keyId, vaspMessage).join();
+        ArgumentCaptor<Runnable> retransmission = ArgumentCaptor.forClass(Runnable.class);
+        verify(confirmationService).registerForConfirmation(eq(vaspMessage), retransmission.capture());
+
+        // The message is received and confirmed, but the confirmation is lost
+        ShhMessage envelope = newEnvelope(topic, "0x01");
+        envelope.setPayload(posted.get(0));
+        whisperListener.onTopicEvent(new TopicEvent<>(topic, envelope));
+        verify(confirmationService, times(1)).confirmReceipt(vaspMessage);
+
+        // The retransmission comes in another envelope, it is confirmed again, but not dispatched
+        retransmission.getValue().run();
+        ShhMessage retransmittedEnvelope = newEnvelope(topic, "0x02");
+        retransmittedEnvelope.setPayload(posted.get(1));
+        whisperListener.onTopicEvent(new TopicEvent<>(topic, retransmittedEnvelope));
+        verify(confirmationService, times(2)).confirmReceipt(vaspMessage);
+        Assertions.assertEquals(Collections.singletonList(vaspMessage), received);
+    }
+
+    @Test
+    public void invalidMessageTest() {
+        Topic topic = new Topic("0x12345678");
+        List<VaspMessage> received = new ArrayList<>();
+        messageService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", event -> received.add(event.getPayload()));
+
+        ArgumentCaptor<TopicListener<ShhMessage>> listenerCaptor = ArgumentCaptor.forClass(TopicListener.class);
+        verify(whisperService).addTopicListener(any(), any(), any(), listenerCaptor.capture());
+
+        VaspMessage vaspMessage = new SessionRequest();
+        vaspMessage.getHeader().setMessageId("0x00000000000000000000000000000001");
+        VaspValidationException error = new VaspValidationException(vaspMessage, "Invalid signature for incoming message");
+        when(signService.extractSignedMessages(any())).thenReturn(Arrays.asList(
+                SignService.ExtractedMessage.failed(error),
+                SignService.ExtractedMessage.of(vaspMessage)));
+
+        listenerCaptor.getValue().onTopicEvents(Arrays.asList(
+                new TopicEvent<>(topic, newEnvelope(topic, "0x01")),
+                new TopicEvent<>(topic, newEnvelope(topic, "0x02"))));
+
+        // The failure of a message does not affect the other ones
+        verify(exceptionHandler).processException(error);
+        Assertions.assertEquals(Collections.singletonList(vaspMessage), received);
+    }
+
+    private static ShhMessage newEnvelope(Topic topic, String hash) {
+        ShhMessage shhMessage = new ShhMessage();
+        shhMessage.setTopic(topic.getData());
+        shhMessage.setHash(hash);
+        shhMessage.setPayload("payload");
+        return shhMessage;
+    }
+
 }
@@ -8,11 +8,14 @@ import org.bouncycastle.util.encoders.Hex;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.openvasp.client.common.Constants;
 import org.openvasp.client.common.Json;
 import org.openvasp.client.common.VaspUtils;
+import org.openvasp.client.common.VaspValidationException;
 import org.openvasp.client.model.*;
 import org.openvasp.client.service.ContractService;
 import org.openvasp.client.service.VaspIdentityService;
@@ -20,6 +23,7 @@ import org.skyscreamer.jsonassert.JSONAssert;
 import org.web3j.crypto.ECKeyPair;
 import org.web3j.utils.Numeric;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -111,6 +115,64 @@ public class SignServiceTests {
         }
     }
 
+    @Test
+    public void extractSignedMessagesTest() {
+        val testData = Json.loadTestYaml(SignTestList.class, "signature/signed-messages.yaml");
+        val testRecord = testData.content.get(0);
+        val keyPair = ECKeyPair.create(Hex.decode(Numeric.cleanHexPrefix(testRecord.privateSigningKey)));
+        val contractInfo = new VaspContractInfo();
+        contractInfo.setSigningKey(Numeric.toHexStringWithPrefix(keyPair.getPublicKey()));
+
+        Mockito.lenient().when(contractService.getVaspContractInfo(ArgumentMatchers.any(EthAddr.class))).thenReturn(contractInfo);
+        Mockito.lenient().when(vaspIdentityService.resolveSenderVaspId(ArgumentMatchers.any()))
+                .thenReturn(Optional.of(new EthAddr("0x6befaf0656b953b188a0ee3bf3db03d07dface61")));
+
+        val signService = new SignServiceImpl(contractService, vaspIdentityService);
+        val valid = testRecord.payloadWithSignature;
+        // The signature of another payload
+        val invalidSignature = testRecord.getPayloadHex()
+                + signService.signPayload(VaspUtils.hexStrEncode("{}", true), testRecord.privateSigningKey);
+
+        val payloads = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            payloads.add(i % 3 == 1 ? invalidSignature : valid);
+        }
+
+        val results = signService.extractSignedMessages(payloads);
+
+        assertThat(results).hasSize(payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i % 3 == 1) {
+                assertThat(results.get(i).getMessage()).isEmpty();
+                assertThat(results.get(i).getError()).containsInstanceOf(VaspValidationException.class);
+            } else {
+                assertThat(results.get(i).getMessage()).isPresent();
+                assertThat(results.get(i).getError()).isEmpty();
+            }
+        }
+    }
+
+    @Test
+    public void verifySignRecoveryIdTest() {
+        val signService = new SignServiceImpl(contractService, vaspIdentityService);
+        val privateKey = "0x790a3437381e0ca44a71123d56dc64a6209542ddd58e5a56ecdb13134e86f7c6";
+        val publicKey = Numeric.toHexStringWithPrefix(ECKeyPair.create(Hex.decode(Numeric.cleanHexPrefix(privateKey))).getPublicKey());
+        val payload = VaspUtils.hexStrEncode("{}", true);
+
+        val signature = signService.signPayload(payload, privateKey);
+        assertThat(signService.verifySign(payload, signature, publicKey)).isTrue();
+
+        val rs = StringUtils.left(signature, 128);
+        val v = Integer.parseInt(StringUtils.right(signature, 2), 16);
+
+        // 'v' in the 0/1 form
+        assertThat(signService.verifySign(payload, rs + String.format("%02x", v - 27), publicKey)).isTrue();
+        // malformed 'v', all the recovery ids are tried
+        assertThat(signService.verifySign(payload, rs + "05", publicKey)).isTrue();
+        // wrong recovery id
+        assertThat(signService.verifySign(payload, rs + String.format("%02x", v == 27 ? 28 : 27), publicKey)).isFalse();
+    }
+
     @Test
     public void makeSignedPayloadTest() {
         SignServiceBaseImpl signServiceBase = new SignServiceImpl(contractService, vaspIdentityService);
@@ -0,0 +1,72 @@
+package org.openvasp.client.service.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openvasp.client.api.whisper.WhisperSymKeyApi;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SymKeyCacheTests {
+
+    @Mock
+    WhisperSymKeyApi whisperApi;
+
+    SymKeyCache symKeyCache;
+
+    @BeforeEach
+    public void init() {
+        symKeyCache = new SymKeyCache(whisperApi, 2);
+    }
+
+    @Test
+    public void registerOnceTest() {
+        when(whisperApi.addSymKey("key1")).thenReturn("id1");
+
+        Assertions.assertEquals("id1", symKeyCache.acquire("key1"));
+        Assertions.assertEquals("id1", symKeyCache.get("key1"));
+        Assertions.assertEquals("id1", symKeyCache.get("key1"));
+        verify(whisperApi, times(1)).addSymKey("key1");
+    }
+
+    @Test
+    public void evictUnreferencedTest() {
+        when(whisperApi.addSymKey(anyString())).thenAnswer(invocation -> "id-" + invocation.getArgument(0));
+
+        symKeyCache.acquire("key1");
+        symKeyCache.get("key2");
+        symKeyCache.get("key3");
+
+        // key1 is referenced, so the least recently used unreferenced key2 has to go
+        verify(whisperApi).deleteSymKey("id-key2");
+        Assertions.assertEquals(2, symKeyCache.size());
+
+        symKeyCache.get("key4");
+        verify(whisperApi).deleteSymKey("id-key3");
+        verify(whisperApi, never()).deleteSymKey("id-key1");
+
+        symKeyCache.release("key1");
+        symKeyCache.get("key5");
+        symKeyCache.get("key6");
+        verify(whisperApi).deleteSymKey("id-key4");
+        verify(whisperApi).deleteSymKey("id-key1");
+    }
+
+    @Test
+    public void reRegisterTest() {
+        when(whisperApi.addSymKey("key1")).thenReturn("id1", "id2");
+
+        Assertions.assertEquals("id1", symKeyCache.acquire("key1"));
+        Assertions.assertEquals("id2", symKeyCache.reRegister("key1", "id1"));
+        // Already re-registered by someone else
+        Assertions.assertEquals("id2", symKeyCache.reRegister("key1", "id1"));
+        Assertions.assertEquals("id2", symKeyCache.get("key1"));
+        verify(whisperApi, times(2)).addSymKey("key1");
+        verify(whisperApi, times(1)).deleteSymKey("id1");
+    }
+
+}
@@ -0,0 +1,273 @@
+package org.openvasp.client.service.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openvasp.client.api.whisper.WhisperApi;
+import org.openvasp.client.api.whisper.WhisperApiError;
+import org.openvasp.client.api.whisper.WhisperSubscriptionApi;
+import org.openvasp.client.api.whisper.model.ShhMessage;
+import org.openvasp.client.api.whisper.model.ShhNewMessageFilterRequest;
+import org.openvasp.client.common.ExceptionHandler;
+import org.openvasp.client.model.EncryptionType;
+import org.openvasp.client.model.Topic;
+import org.web3j.protocol.core.Response;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WhisperFilterManagerTests {
+
+    @Mock
+    WhisperApi whisperApi;
+    @Mock
+    WhisperSubscriptionApi subscriptionApi;
+    @Mock
+    ExceptionHandler exceptionHandler;
+
+    WhisperFilterManager filterManager;
+    Set<Topic> saturatedTopics = new HashSet<>();
+
+    @BeforeEach
+    public void init() {
+        filterManager = new WhisperFilterManager(
+                whisperApi,
+                subscriptionApi,
+                new SymKeyCache(whisperApi, 10),
+                message -> {},
+                saturatedTopics::contains,
+                exceptionHandler,
+                400);
+    }
+
+    @Test
+    public void sharedKeyTest() {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+        ShhMessage shhMessage = new ShhMessage();
+        shhMessage.setTopic(topic1.getData());
+
+        when(whisperApi.addSymKey("key")).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filter1", "filter2");
+        when(whisperApi.getFilterMessages("filter1")).thenReturn(Collections.singletonList(shhMessage));
+
+        filterManager.addTopic(topic1, EncryptionType.SYMMETRIC, "key");
+        filterManager.addTopic(topic2, EncryptionType.SYMMETRIC, "key");
+
+        ArgumentCaptor<ShhNewMessageFilterRequest> requestCaptor = ArgumentCaptor.forClass(ShhNewMessageFilterRequest.class);
+        verify(whisperApi, times(2)).newMessageFilter(requestCaptor.capture());
+        Assertions.assertEquals(
+                Arrays.asList(topic1.getData(), topic2.getData()),
+                requestCaptor.getValue().getTopics());
+        Assertions.assertEquals("keyId", requestCaptor.getValue().getSymKeyId());
+
+        // The replaced filter is drained before deletion
+        verify(whisperApi).deleteMessageFilter("filter1");
+        Assertions.assertEquals(Collections.singletonList(shhMessage), filterManager.drainPendingMessages());
+        Assertions.assertTrue(filterManager.drainPendingMessages().isEmpty());
+
+        Assertions.assertEquals(Collections.singletonList("filter2"), filterManager.pollableFilterIds());
+        verify(whisperApi, times(1)).addSymKey("key");
+    }
+
+    @Test
+    public void shardingTest() {
+        when(whisperApi.addPrivateKey("key")).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filterId");
+
+        for (int i = 0; i <= WhisperFilterManager.MAX_TOPICS_PER_FILTER; i++) {
+            filterManager.addTopic(new Topic(String.format("0x%08x", i)), EncryptionType.ASSYMETRIC, "key");
+        }
+
+        Assertions.assertEquals(2, filterManager.filterCount());
+        verify(whisperApi, times(1)).addPrivateKey("key");
+    }
+
+    @Test
+    public void removeTopicTest() {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+
+        when(whisperApi.addPrivateKey("key")).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filter1", "filter2", "filter3");
+
+        filterManager.addTopic(topic1, EncryptionType.ASSYMETRIC, "key");
+        filterManager.addTopic(topic2, EncryptionType.ASSYMETRIC, "key");
+
+        filterManager.removeTopic(topic1);
+        Assertions.assertEquals(Collections.singletonList("filter3"), filterManager.pollableFilterIds());
+        verify(whisperApi, never()).deleteKeyPair(any());
+
+        filterManager.removeTopic(topic2);
+        Assertions.assertTrue(filterManager.pollableFilterIds().isEmpty());
+        Assertions.assertEquals(0, filterManager.filterCount());
+        verify(whisperApi).deleteMessageFilter("filter3");
+        verify(whisperApi).deleteKeyPair("keyId");
+    }
+
+    @Test
+    public void batchTest() {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+        Topic topic3 = new Topic("0x00000003");
+
+        when(whisperApi.addPrivateKey("key")).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filter1", "filter2");
+
+        // The filter is created once for all the topics
+        filterManager.addTopics(Arrays.asList(topic1, topic2, topic3), EncryptionType.ASSYMETRIC, "key");
+        Assertions.assertEquals(Collections.singletonList("filter1"), filterManager.pollableFilterIds());
+
+        // and rebuilt once when they go
+        filterManager.removeTopics(Arrays.asList(topic1, topic2));
+        Assertions.assertEquals(Collections.singletonList("filter2"), filterManager.pollableFilterIds());
+
+        ArgumentCaptor<ShhNewMessageFilterRequest> requestCaptor = ArgumentCaptor.forClass(ShhNewMessageFilterRequest.class);
+        verify(whisperApi, times(2)).newMessageFilter(requestCaptor.capture());
+        Assertions.assertEquals(Collections.singletonList(topic3.getData()), requestCaptor.getValue().getTopics());
+        verify(whisperApi).deleteMessageFilter("filter1");
+    }
+
+    @Test
+    public void allTopicsTest() {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+
+        when(whisperApi.addPrivateKey("key")).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filter1");
+
+        filterManager.matchAllTopics(EncryptionType.ASSYMETRIC, "key");
+        filterManager.addTopic(topic1, EncryptionType.ASSYMETRIC, "key");
+        // The topics beyond the first one are not sent to the node, neither is the sharding applied
+        for (int i = 2; i <= WhisperFilterManager.MAX_TOPICS_PER_FILTER + 1; i++) {
+            filterManager.addTopic(new Topic(String.format("0x%08x", i)), EncryptionType.ASSYMETRIC, "key");
+        }
+        filterManager.removeTopic(topic2);
+        Assertions.assertEquals(1, filterManager.filterCount());
+        Assertions.assertEquals(Collections.singletonList("filter1"), filterManager.pollableFilterIds());
+
+        ArgumentCaptor<ShhNewMessageFilterRequest> requestCaptor = ArgumentCaptor.forClass(ShhNewMessageFilterRequest.class);
+        verify(whisperApi, times(1)).newMessageFilter(requestCaptor.capture());
+        Assertions.assertNull(requestCaptor.getValue().getTopics());
+        Assertions.assertEquals("keyId", requestCaptor.getValue().getPrivateKeyId());
+        verify(whisperApi, never()).getFilterMessages(any());
+
+        filterManager.close();
+        verify(whisperApi).deleteMessageFilter("filter1");
+        verify(whisperApi).deleteKeyPair("keyId");
+    }
+
+    @Test
+    public void batchRollbackTest() {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+
+        when(whisperApi.addPrivateKey("key")).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any())).thenThrow(new IllegalStateException("Node is not available"));
+
+        Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> filterManager.addTopics(Arrays.asList(topic1, topic2), EncryptionType.ASSYMETRIC, "key"));
+        Assertions.assertEquals(0, filterManager.filterCount());
+        verify(whisperApi).deleteKeyPair("keyId");
+    }
+
+    @Test
+    public void nodeRestartTest() {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+
+        when(whisperApi.addPrivateKey("key")).thenReturn("keyId1", "keyId2");
+        when(whisperApi.addSymKey("symKey")).thenReturn("symKeyId1", "symKeyId2");
+        when(whisperApi.newMessageFilter(any()))
+                .thenReturn("filter1", "filter2")
+                // The restarted node lost both the filters and the keys
+                .thenThrow(new WhisperApiError(new Response.Error(-32000, "invalid id"), null))
+                .thenReturn("filter3")
+                .thenThrow(new WhisperApiError(new Response.Error(-32000, "non-existent key ID"), null))
+                .thenReturn("filter4");
+        when(whisperApi.getFilterMessages(any()))
+                .thenThrow(new WhisperApiError(new Response.Error(-32000, "filter not found"), null));
+
+        filterManager.addTopic(topic1, EncryptionType.ASSYMETRIC, "key");
+        filterManager.addTopic(topic2, EncryptionType.SYMMETRIC, "symKey");
+
+        Assertions.assertTrue(filterManager.recreateFilter("filter1"));
+        Assertions.assertTrue(filterManager.recreateFilter("filter2"));
+        Assertions.assertEquals(Arrays.asList("filter3", "filter4"), filterManager.pollableFilterIds());
+
+        // The filters are re-created with the re-added keys
+        ArgumentCaptor<ShhNewMessageFilterRequest> requestCaptor = ArgumentCaptor.forClass(ShhNewMessageFilterRequest.class);
+        verify(whisperApi, times(6)).newMessageFilter(requestCaptor.capture());
+        Assertions.assertEquals("keyId2", requestCaptor.getAllValues().get(3).getPrivateKeyId());
+        Assertions.assertEquals("symKeyId2", requestCaptor.getAllValues().get(5).getSymKeyId());
+
+        filterManager.close();
+        verify(whisperApi).deleteKeyPair("keyId2");
+        verify(whisperApi, never()).deleteKeyPair("keyId1");
+    }
+
+    @Test
+    public void saturatedTopicTest() {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId1", "keyId2");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filter1", "filter2");
+
+        filterManager.addTopic(topic1, EncryptionType.SYMMETRIC, "key1");
+        filterManager.addTopic(topic2, EncryptionType.SYMMETRIC, "key2");
+        filterManager.onFilterPolled("filter2", false, 0);
+
+        // The saturated filter is neither polled nor waited for, the messages stay at the node
+        saturatedTopics.add(topic1);
+        Assertions.assertTrue(filterManager.dueFilterIds(0).isEmpty());
+        Assertions.assertEquals(2 * WhisperFilterManager.MIN_POLL_INTERVAL, filterManager.nextPollDelay(0));
+
+        saturatedTopics.clear();
+        Assertions.assertEquals(Collections.singletonList("filter1"), filterManager.dueFilterIds(0));
+        Assertions.assertEquals(0, filterManager.nextPollDelay(0));
+    }
+
+    @Test
+    public void pollScheduleTest() {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId1", "keyId2");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filter1", "filter2");
+
+        filterManager.addTopic(topic1, EncryptionType.SYMMETRIC, "key1");
+        filterManager.addTopic(topic2, EncryptionType.SYMMETRIC, "key2");
+
+        // New filters are due immediately
+        Assertions.assertEquals(Arrays.asList("filter1", "filter2"), filterManager.dueFilterIds(0));
+        Assertions.assertEquals(0, filterManager.nextPollDelay(0));
+
+        // The idle filter backs off up to the max interval, the busy one stays hot
+        long now = 0;
+        for (int i = 0; i < 5; i++) {
+            filterManager.onFilterPolled("filter1", false, now);
+            filterManager.onFilterPolled("filter2", true, now);
+            now += WhisperFilterManager.MIN_POLL_INTERVAL;
+        }
+        now -= WhisperFilterManager.MIN_POLL_INTERVAL;
+        Assertions.assertEquals(WhisperFilterManager.MIN_POLL_INTERVAL, filterManager.nextPollDelay(now));
+        Assertions.assertEquals(Collections.singletonList("filter2"),
+                filterManager.dueFilterIds(now + WhisperFilterManager.MIN_POLL_INTERVAL));
+        Assertions.assertEquals(Arrays.asList("filter1", "filter2"), filterManager.dueFilterIds(now + 400));
+        Assertions.assertTrue(filterManager.dueFilterIds(now + 399).contains("filter2"));
+        Assertions.assertFalse(filterManager.dueFilterIds(now + 399).contains("filter1"));
+    }
+
+}
@@ -6,13 +6,26 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
 import org.openvasp.client.api.whisper.WhisperApi;
+import org.openvasp.client.api.whisper.WhisperApiError;
+import org.openvasp.client.api.whisper.WhisperAsyncApi;
+import org.openvasp.client.api.whisper.WhisperSubscriptionApi;
 import org.openvasp.client.api.whisper.model.ShhMessage;
 import org.openvasp.client.common.ExceptionHandler;
 import org.openvasp.client.config.VaspConfig;
 import org.openvasp.client.model.*;
+import org.openvasp.client.service.TopicListener;
+import org.web3j.protocol.core.Response;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -23,6 +36,10 @@ public class WhisperServiceImplTests {
     @Mock
     WhisperApi whisperApi;
     @Mock
+    WhisperAsyncApi whisperAsyncApi;
+    @Mock
+    WhisperSubscriptionApi subscriptionApi;
+    @Mock
     ExceptionHandler exceptionHandler;
 
     VaspConfig vaspConfig;
@@ -39,7 +56,7 @@ public class WhisperServiceImplTests {
         vaspConfig.setVaspCode(new VaspCode("7dface61"));
         vaspConfig.setHandshakePrivateKey("0xe7578145d518e5272d660ccfdeceedf2d55b90867f2b7a6e54dc726662aebac2");
 
-        whisperService = new WhisperServiceImpl(vaspConfig, exceptionHandler, whisperApi);
+        whisperService = new WhisperServiceImpl(vaspConfig, exceptionHandler, whisperApi, whisperAsyncApi, subscriptionApi);
     }
 
     @Test
@@ -54,6 +71,66 @@ public class WhisperServiceImplTests {
         verify(whisperApi, times(2)).post(any());
     }
 
+    @Test
+    public void sendSymmetricTest() {
+        Topic topic = new Topic("0x12345678");
+        when(whisperApi.addSymKey("key")).thenReturn("keyId1", "keyId2");
+        when(whisperApi.post(any()))
+                .thenReturn("hash")
+                .thenThrow(new WhisperApiError(new Response.Error(-32000, "non-existent key ID"), null))
+                .thenReturn("hash");
+
+        whisperService.send(topic, EncryptionType.SYMMETRIC, "key", "payload1");
+        verify(whisperApi, times(1)).addSymKey("key");
+
+        // The node forgot the key, so it has to be registered again
+        whisperService.send(topic, EncryptionType.SYMMETRIC, "key", "payload2");
+        verify(whisperApi, times(2)).addSymKey("key");
+        verify(whisperApi, times(3)).post(any());
+    }
+
+    @Test
+    public void sendSymmetricErrorTest() {
+        Topic topic = new Topic("0x12345678");
+        WhisperApiError powError = new WhisperApiError(new Response.Error(-32000, "failed to reach the PoW target"), null);
+        when(whisperApi.addSymKey("key")).thenReturn("keyId");
+        when(whisperApi.post(any())).thenThrow(powError);
+        when(whisperAsyncApi.postAsync(any())).thenReturn(CompletableFuture.failedFuture(powError));
+
+        // Only the unknown key is registered again, the other errors are not retried
+        Assertions.assertThrows(WhisperApiError.class, () ->
+                whisperService.send(topic, EncryptionType.SYMMETRIC, "key", "payload"));
+        Assertions.assertTrue(whisperService
+                .sendAsync(topic, EncryptionType.SYMMETRIC, "key", "payload")
+                .isCompletedExceptionally());
+        verify(whisperApi, times(1)).addSymKey("key");
+        verify(whisperApi, times(1)).post(any());
+        verify(whisperAsyncApi, times(1)).postAsync(any());
+        verify(whisperApi, never()).deleteSymKey(any());
+    }
+
+    @Test
+    public void sendAsyncTest() {
+        Topic topic = new Topic("0x12345678");
+        when(whisperApi.addSymKey("key")).thenReturn("keyId1", "keyId2");
+        when(whisperAsyncApi.postAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new WhisperApiError(new Response.Error(-32000, "non-existent key ID"), null)))
+                .thenReturn(CompletableFuture.completedFuture("hash"));
+
+        whisperService.sendAsync(topic, EncryptionType.SYMMETRIC, "key", "payload").join();
+        verify(whisperApi, times(2)).addSymKey("key");
+        verify(whisperApi).deleteSymKey("keyId1");
+        verify(whisperAsyncApi, times(2)).postAsync(any());
+        verify(whisperApi, never()).post(any());
+
+        when(whisperAsyncApi.postAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException()));
+        Assertions.assertTrue(whisperService
+                .sendAsync(topic, EncryptionType.ASSYMETRIC, "key", "payload")
+                .isCompletedExceptionally());
+    }
+
     @Test
     public void removeTopicListenerTest() {
         Topic topic = new Topic("0x12345678");
@@ -86,7 +163,10 @@ public class WhisperServiceImplTests {
         messages.add(shhMessage);
 
         when(whisperApi.newMessageFilter(any())).thenReturn(filterId);
-        when(whisperApi.getFilterMessages(any())).thenReturn(messages);
+        when(whisperApi.getFilterMessagesBatch(any())).thenReturn(
+                Collections.singletonList(messages),
+                Collections.singletonList(messages),
+                Collections.singletonList(new ArrayList<>()));
 
         WhisperServiceImpl.TopicListenerRecord topicListenerRecord = whisperService.new TopicListenerRecord(topic, EncryptionType.SYMMETRIC, key);
         WhisperServiceImpl.TopicListenerRecord spy = spy(topicListenerRecord);
@@ -96,6 +176,198 @@ public class WhisperServiceImplTests {
         verify(spy, times(2)).onTopicEvent(any());
     }
 
+    @Test
+    public void lostFilterTest() {
+        Topic topic = new Topic("0x12345678");
+        WhisperApiError filterNotFound = new WhisperApiError(new Response.Error(-32000, "filter not found"), null);
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filter1", "filter2");
+        when(whisperApi.getFilterMessagesBatch(any()))
+                .thenThrow(filterNotFound)
+                .thenReturn(Collections.singletonList(new ArrayList<>()));
+        when(whisperApi.getFilterMessages("filter1")).thenThrow(filterNotFound);
+
+        whisperService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", event -> {});
+
+        // The lost filter is re-created and the polling goes on
+        verify(whisperApi, timeout(2000).times(2)).newMessageFilter(any());
+        verify(whisperApi, timeout(2000)).getFilterMessagesBatch(Collections.singletonList("filter2"));
+        Assertions.assertFalse(whisperService.waitForTermination(0));
+    }
+
+    @Test
+    public void subscriptionTest() {
+        Topic topic = new Topic("0x12345678");
+        ShhMessage shhMessage = new ShhMessage();
+        shhMessage.setTopic(topic.getData());
+        PublishProcessor<ShhMessage> messages = PublishProcessor.create();
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId");
+        when(subscriptionApi.isSubscriptionAvailable()).thenReturn(true);
+        when(subscriptionApi.subscribeMessages(any())).thenReturn(messages);
+
+        TopicListener<ShhMessage> listener = mock(TopicListener.class, CALLS_REAL_METHODS);
+        whisperService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", listener);
+
+        messages.onNext(shhMessage);
+        verify(listener, timeout(1000).times(1)).onTopicEvent(any());
+        verify(whisperApi, never()).newMessageFilter(any());
+    }
+
+    @Test
+    public void dispatchOrderTest() throws InterruptedException {
+        Topic topic1 = new Topic("0x00000001");
+        Topic topic2 = new Topic("0x00000002");
+        PublishProcessor<ShhMessage> messages = PublishProcessor.create();
+        CountDownLatch slowListenerLatch = new CountDownLatch(1);
+        List<String> payloads1 = new CopyOnWriteArrayList<>();
+        List<String> payloads2 = new CopyOnWriteArrayList<>();
+        CountDownLatch received1 = new CountDownLatch(10);
+        CountDownLatch received2 = new CountDownLatch(10);
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId");
+        when(subscriptionApi.isSubscriptionAvailable()).thenReturn(true);
+        when(subscriptionApi.subscribeMessages(any())).thenReturn(messages);
+
+        whisperService.addTopicListener(topic1, EncryptionType.SYMMETRIC, "key", event -> {
+            try {
+                slowListenerLatch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            payloads1.add(event.getPayload().getPayload());
+            received1.countDown();
+        });
+        whisperService.addTopicListener(topic2, EncryptionType.SYMMETRIC, "key", event -> {
+            payloads2.add(event.getPayload().getPayload());
+            received2.countDown();
+        });
+
+        for (int i = 0; i < 10; i++) {
+            messages.onNext(newMessage(topic1, "a" + i));
+            messages.onNext(newMessage(topic2, "b" + i));
+        }
+
+        // The slow listener of the first topic does not hold up the second one
+        Assertions.assertTrue(received2.await(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(payloads1.isEmpty());
+
+        slowListenerLatch.countDown();
+        Assertions.assertTrue(received1.await(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals("a" + i, payloads1.get(i));
+            Assertions.assertEquals("b" + i, payloads2.get(i));
+        }
+    }
+
+    @Test
+    public void messageOnFilterCreationTest() {
+        Topic topic = new Topic("0x12345678");
+        ShhMessage shhMessage = newMessage(topic, "payload");
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId");
+        when(subscriptionApi.isSubscriptionAvailable()).thenReturn(true);
+        // The message is pushed as soon as the subscription is created
+        when(subscriptionApi.subscribeMessages(any())).thenReturn(Flowable.just(shhMessage).concatWith(Flowable.never()));
+
+        TopicListener<ShhMessage> listener = mock(TopicListener.class, CALLS_REAL_METHODS);
+        whisperService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", listener);
+        verify(listener, timeout(1000).times(1)).onTopicEvent(any());
+    }
+
+    @Test
+    public void addTopicListenerRollbackTest() {
+        Topic topic = new Topic("0x12345678");
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any()))
+                .thenThrow(new IllegalStateException("Test"), new IllegalStateException("Test"))
+                .thenReturn("filterId");
+
+        TopicListener<ShhMessage> listener = event -> {};
+        Assertions.assertThrows(IllegalStateException.class, () ->
+                whisperService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", listener));
+        Assertions.assertThrows(IllegalStateException.class, () ->
+                whisperService.addTopicListeners(List.of(topic), EncryptionType.SYMMETRIC, "key", listener));
+
+        // The failed topic is not left without a filter, so it is added again
+        whisperService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", listener);
+        verify(whisperApi, times(3)).newMessageFilter(any());
+    }
+
+    @Test
+    public void dispatchBackpressureTest() throws InterruptedException {
+        vaspConfig.setWhisperDispatchQueueSize(2);
+        whisperService = new WhisperServiceImpl(vaspConfig, exceptionHandler, whisperApi, whisperAsyncApi, subscriptionApi);
+
+        Topic topic = new Topic("0x00000001");
+        PublishProcessor<ShhMessage> messages = PublishProcessor.create();
+        CountDownLatch listenerStarted = new CountDownLatch(1);
+        CountDownLatch slowListenerLatch = new CountDownLatch(1);
+        List<String> payloads = new CopyOnWriteArrayList<>();
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId");
+        when(subscriptionApi.isSubscriptionAvailable()).thenReturn(true);
+        when(subscriptionApi.subscribeMessages(any())).thenReturn(messages);
+        when(whisperApi.newMessageFilter(any())).thenReturn("filter1");
+        // The message sent while the subscription is paused stays at the node
+        when(whisperApi.getFilterMessages("filter1")).thenReturn(Collections.singletonList(newMessage(topic, "a3")));
+
+        whisperService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", event -> {
+            listenerStarted.countDown();
+            try {
+                slowListenerLatch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            payloads.add(event.getPayload().getPayload());
+        });
+
+        messages.onNext(newMessage(topic, "a0"));
+        Assertions.assertTrue(listenerStarted.await(1, TimeUnit.SECONDS));
+
+        // The subscription thread is not blocked by the full queue, the subscription is paused instead
+        for (int i = 1; i < 3; i++) {
+            messages.onNext(newMessage(topic, "a" + i));
+        }
+        verify(whisperApi, timeout(1000)).newMessageFilter(any());
+        // The filter replacing the paused subscription is not polled while the topic is saturated
+        verify(whisperApi, after(300).never()).getFilterMessagesBatch(any());
+        Assertions.assertFalse(messages.hasSubscribers());
+
+        // The resumed subscription takes over, the messages left at the node are drained from the filter
+        slowListenerLatch.countDown();
+        verify(whisperApi, timeout(1000)).deleteMessageFilter("filter1");
+        verify(subscriptionApi, times(2)).subscribeMessages(any());
+        Assertions.assertTrue(messages.hasSubscribers());
+        verify(exceptionHandler, after(300).never()).processException(any());
+        Assertions.assertEquals(List.of("a0", "a1", "a2", "a3"), payloads);
+    }
+
+    private static ShhMessage newMessage(Topic topic, String payload) {
+        ShhMessage shhMessage = new ShhMessage();
+        shhMessage.setTopic(topic.getData());
+        shhMessage.setPayload(payload);
+        return shhMessage;
+    }
+
+    @Test
+    public void subscriptionFallbackTest() {
+        Topic topic = new Topic("0x12345678");
+        PublishProcessor<ShhMessage> messages = PublishProcessor.create();
+
+        when(whisperApi.addSymKey(any())).thenReturn("keyId");
+        when(whisperApi.newMessageFilter(any())).thenReturn("filterId");
+        when(subscriptionApi.isSubscriptionAvailable()).thenReturn(true);
+        when(subscriptionApi.subscribeMessages(any())).thenReturn(messages);
+
+        whisperService.addTopicListener(topic, EncryptionType.SYMMETRIC, "key", event -> {});
+        messages.onError(new RuntimeException("Connection was closed"));
+
+        verify(whisperApi).newMessageFilter(any());
+    }
+
     @Test
     public void closeAndShutdownTest() {
         whisperService.close();
@@ -130,6 +130,16 @@ public class SessionManagerImplTests {
         Assertions.assertEquals(Optional.empty(), sessionManager.resolveSenderVaspId(transferRequest));
     }
 
+    @Test
+    public void resolveSenderVaspIdBySessionTest() {
+        // The beneficiary session is found by the session ID of the message
+        VaspMessage transferRequest = createTransferRequest();
+        Assertions.assertEquals(Optional.of(ethAddr), sessionManager.resolveSenderVaspId(transferRequest));
+
+        transferRequest.getHeader().setSessionId("0x00000000000000000000000000000000");
+        Assertions.assertEquals(Optional.empty(), sessionManager.resolveSenderVaspId(transferRequest));
+    }
+
     @Test
     public void sendMessageBeneficiaryTest() {
         SessionMessage vaspMessage = createSessionReply();